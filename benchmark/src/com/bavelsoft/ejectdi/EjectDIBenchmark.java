@@ -0,0 +1,109 @@
+package com.bavelsoft.ejectdi;
+
+import com.google.gson.GsonBuilder;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts a generated project with {@link EjectDIRunner} and appends timings and peak heap to the results file,
+ * so the numbers of different versions can be compared. The size of the project is configured by system properties,
+ * see build.gradle.
+ */
+public class EjectDIBenchmark extends LightCodeInsightFixtureTestCase {
+
+    public void testConvertSyntheticProject() throws IOException {
+        int classes = Integer.getInteger("ejectdi.benchmark.classes", 1000);
+        double statelessRatio = Double.parseDouble(System.getProperty("ejectdi.benchmark.statelessRatio", "0.4"));
+        int injections = Integer.getInteger("ejectdi.benchmark.injections", 3);
+        int statelessCount = (int) (classes * statelessRatio);
+        int statefulCount = classes - statelessCount;
+
+        long generationStart = System.nanoTime();
+        new SyntheticProjectGenerator(statelessCount, statefulCount, injections)
+                .generate((path, text) -> myFixture.addFileToProject(path, text));
+        long generationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - generationStart);
+
+        resetPeakHeap();
+        long start = System.nanoTime();
+        ConversionReport[] result = new ConversionReport[1];
+        // background tasks run synchronously in tests
+        new EjectDIRunner(getProject()).run(ClassSources.forScope(GlobalSearchScope.projectScope(getProject())),
+                report -> result[0] = report);
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertNotNull("run is not finished", result[0]);
+        assertEquals("converted classes", statelessCount, result[0].getConverted().size());
+        assertNoInjectedFields(statefulCount);
+
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("version", System.getProperty("ejectdi.version", "dev"));
+        record.put("timestamp", Instant.now().toString());
+        record.put("classes", classes);
+        record.put("stateless", statelessCount);
+        record.put("stateful", statefulCount);
+        record.put("injectionsPerClass", injections);
+        record.put("generationMillis", generationMillis);
+        record.put("totalMillis", totalMillis);
+        record.put("peakHeapBytes", peakHeap());
+        record.put("metrics", result[0].getMetrics().snapshot());
+        String json = new GsonBuilder().create().toJson(record);
+        System.out.println(json);
+
+        String output = System.getProperty("ejectdi.benchmark.output");
+        if (output != null) {
+            Files.write(Paths.get(output), Collections.singletonList(json), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Stateful classes keep only their counter, the fields injecting converted classes are removed.
+     */
+    private void assertNoInjectedFields(int statefulCount) {
+        JavaPsiFacade facade = JavaPsiFacade.getInstance(getProject());
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(getProject());
+        for (int i = 0; i < statefulCount; i++) {
+            String name = SyntheticProjectGenerator.statefulClassName(i);
+            PsiClass psiClass = facade.findClass(name, scope);
+            assertNotNull(name, psiClass);
+            for (PsiField field : psiClass.getFields()) {
+                assertEquals(name + " has an injected field left", "counter", field.getName());
+            }
+        }
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
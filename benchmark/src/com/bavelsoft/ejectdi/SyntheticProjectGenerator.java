@@ -0,0 +1,89 @@
+package com.bavelsoft.ejectdi;
+
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+/**
+ * Generates sources of a synthetic DI project: stateless singletons, which can be converted,
+ * and stateful classes, which inject the singletons and call them.
+ */
+class SyntheticProjectGenerator {
+
+    private static final int CLASSES_PER_PACKAGE = 500;
+
+    private final int statelessCount;
+    private final int statefulCount;
+    private final int injectionsPerClass;
+    private final Random random = new Random(42);
+
+    SyntheticProjectGenerator(int statelessCount, int statefulCount, int injectionsPerClass) {
+        this.statelessCount = statelessCount;
+        this.statefulCount = statefulCount;
+        this.injectionsPerClass = injectionsPerClass;
+    }
+
+    /**
+     * @param sink consumes a relative path and a text of every generated file
+     */
+    void generate(BiConsumer<String, String> sink) {
+        sink.accept("javax/inject/Singleton.java", "package javax.inject;\n\npublic @interface Singleton {\n}\n");
+        sink.accept("javax/inject/Inject.java", "package javax.inject;\n\npublic @interface Inject {\n}\n");
+        for (int i = 0; i < statelessCount; i++) {
+            sink.accept(path("stateless", i, "Stateless"), stateless(i));
+        }
+        for (int i = 0; i < statefulCount; i++) {
+            sink.accept(path("stateful", i, "Stateful"), stateful(i));
+        }
+    }
+
+    private static String path(String kind, int index, String prefix) {
+        return String.format("synthetic/%s/p%d/%s%d.java", kind, index / CLASSES_PER_PACKAGE, prefix, index);
+    }
+
+    static String statefulClassName(int index) {
+        return packageName("stateful", index) + ".Stateful" + index;
+    }
+
+    private static String packageName(String kind, int index) {
+        return String.format("synthetic.%s.p%d", kind, index / CLASSES_PER_PACKAGE);
+    }
+
+    private String stateless(int index) {
+        return "package " + packageName("stateless", index) + ";\n\n" +
+                "import javax.inject.Singleton;\n\n" +
+                "@Singleton\n" +
+                "public class Stateless" + index + " {\n" +
+                "    private static final String PREFIX = \"s" + index + "\";\n\n" +
+                "    public String compute(int value) {\n" +
+                "        return PREFIX + format(value);\n" +
+                "    }\n\n" +
+                "    public String format(int value) {\n" +
+                "        return Integer.toHexString(value);\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    private String stateful(int index) {
+        StringBuilder fields = new StringBuilder();
+        StringBuilder calls = new StringBuilder();
+        int injections = statelessCount == 0 ? 0 : injectionsPerClass;
+        for (int i = 0; i < injections; i++) {
+            int target = random.nextInt(statelessCount);
+            String type = packageName("stateless", target) + ".Stateless" + target;
+            fields.append("    @Inject\n    ").append(type).append(" service").append(i).append(";\n");
+            calls.append("        result.append(service").append(i).append(".compute(counter));\n");
+        }
+        return "package " + packageName("stateful", index) + ";\n\n" +
+                "import javax.inject.Inject;\n\n" +
+                "public class Stateful" + index + " {\n" +
+                fields +
+                "    private int counter;\n\n" +
+                "    public String run() {\n" +
+                "        counter++;\n" +
+                "        StringBuilder result = new StringBuilder();\n" +
+                calls +
+                "        return result.toString();\n" +
+                "    }\n" +
+                "}\n";
+    }
+}
@@ -0,0 +1,55 @@
+package com.bavelsoft.ejectdi;
+
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.IOException;
+
+/**
+ * Converts the classes of a saved {@link ConversionPlan} without analyzing the project again.
+ */
+public class ApplyConversionPlanAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(ApplyConversionPlanAction.class);
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            LOG.error("project is null");
+            return;
+        }
+        VirtualFile file = FileChooser.chooseFile(
+                FileChooserDescriptorFactory.createSingleFileDescriptor("json").withTitle("Choose Conversion Plan"), project, null);
+        if (file == null) {
+            return;
+        }
+        ConversionPlan plan;
+        try {
+            plan = ConversionPlan.fromJson(new String(file.contentsToByteArray(), CharsetToolkit.UTF8_CHARSET));
+        } catch (IOException | JsonParseException | IllegalArgumentException ex) {
+            LOG.warn("failed to read plan: " + file, ex);
+            Messages.showErrorDialog(project, "Failed to read plan: " + ex.getMessage(), "Eject DI");
+            return;
+        }
+        new EjectDIRunner(project).apply(plan, report -> {
+            if (report.getFailedCount() > 0) {
+                Messages.showWarningDialog(project, String.format("%d classes were not converted, see the Eject DI tool window",
+                        report.getFailedCount()), "Eject DI");
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Ref;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Read actions for background analysis that give way to write actions instead of blocking the EDT.
+ */
+final class BackgroundReadActions {
+
+    private BackgroundReadActions() {
+    }
+
+    /**
+     * Runs the action in a read action that is cancelled as soon as a write action is requested
+     * and restarted once the write action is finished. Throws {@link com.intellij.openapi.progress.ProcessCanceledException}
+     * if the given indicator is cancelled. If the thread already holds a read action, e.g. in the usage search
+     * of a refactoring, the action just runs in it.
+     */
+    static void run(@NotNull ProgressIndicator indicator, @NotNull Runnable action) {
+        if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+            action.run();
+            return;
+        }
+        while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(action, indicator)) {
+            indicator.checkCanceled();
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+    }
+
+    /**
+     * Processes the items concurrently, each one should take its own read action with {@link #run}. If the calling
+     * thread holds a read action, the items are processed on it one by one instead: pooled threads can't get
+     * a read action while a write action waits for the one held here.
+     *
+     * @throws ProcessCanceledException if some items were not processed
+     */
+    static <T> void processConcurrently(@NotNull List<T> items, @NotNull ProgressIndicator indicator,
+                                        @NotNull Processor<T> processor) {
+        boolean completed = true;
+        if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+            for (T item : items) {
+                indicator.checkCanceled();
+                if (!processor.process(item)) {
+                    completed = false;
+                    break;
+                }
+            }
+        } else {
+            completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(items, indicator, true, processor);
+        }
+        if (!completed) {
+            throw new ProcessCanceledException();
+        }
+    }
+
+    static <T> T compute(@NotNull ProgressIndicator indicator, @NotNull Computable<T> computable) {
+        Ref<T> result = Ref.create();
+        run(indicator, () -> result.set(computable.compute()));
+        return result.get();
+    }
+}
@@ -0,0 +1,197 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.util.DocumentUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects deletions and replacements of PSI elements and applies them as text edits: the edits of a file are
+ * sorted and applied in a single bulk document update, all documents are committed once at the end.
+ * Unlike {@link PsiElement#delete()} it doesn't fire PSI events and reparse a file for every element.
+ * Must be used inside a write action. The elements are kept as smart pointers, so PSI may be changed between
+ * collecting and {@link #apply()}; an edit of an element that was removed meanwhile is dropped with a warning.
+ */
+final class BulkDocumentEditor {
+
+    private static final Logger LOG = Logger.getInstance(BulkDocumentEditor.class);
+
+    private final Project project;
+    private final Map<PsiFile, List<Edit>> edits = new LinkedHashMap<>();
+
+    private static class Edit {
+        private final SmartPsiElementPointer<PsiElement> pointer;
+        private final String description;
+        // null for deletion
+        private final String replacement;
+        private TextRange range;
+
+        private Edit(SmartPsiElementPointer<PsiElement> pointer, String description, String replacement) {
+            this.pointer = pointer;
+            this.description = description;
+            this.replacement = replacement;
+        }
+    }
+
+    BulkDocumentEditor(@NotNull Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Deletes the element, together with its line if nothing else is on it.
+     */
+    void delete(@NotNull PsiElement element) {
+        add(element, null);
+    }
+
+    void replace(@NotNull PsiElement element, @NotNull String text) {
+        add(element, text);
+    }
+
+    private void add(PsiElement element, String replacement) {
+        PsiFile file = element.getContainingFile();
+        if (file != null) {
+            SmartPsiElementPointer<PsiElement> pointer = SmartPointerManager.getInstance(project).createSmartPsiElementPointer(element, file);
+            edits.computeIfAbsent(file, key -> new ArrayList<>()).add(new Edit(pointer, String.valueOf(element), replacement));
+        } else {
+            LOG.warn(String.format("element is not in a file: %s", element));
+        }
+    }
+
+    void apply() {
+        if (edits.isEmpty()) {
+            return;
+        }
+        PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+        for (Map.Entry<PsiFile, List<Edit>> entry : edits.entrySet()) {
+            if (!entry.getKey().isValid()) {
+                LOG.warn(String.format("%s: %d edits dropped, the file was removed", entry.getKey().getName(), entry.getValue().size()));
+                continue;
+            }
+            Document document = documentManager.getDocument(entry.getKey());
+            if (document == null) {
+                applyToPsi(entry.getValue());
+                continue;
+            }
+            // PSI changes made before must reach the document first, ranges are taken from the synchronized PSI
+            documentManager.doPostponedOperationsAndUnblockDocument(document);
+            List<Edit> fileEdits = prepare(entry.getValue(), document);
+            DocumentUtil.executeInBulk(document, true, () -> {
+                // from the end of the document, so the ranges of the remaining edits don't move
+                for (int i = fileEdits.size() - 1; i >= 0; i--) {
+                    Edit edit = fileEdits.get(i);
+                    if (edit.replacement == null) {
+                        document.deleteString(edit.range.getStartOffset(), edit.range.getEndOffset());
+                    } else {
+                        document.replaceString(edit.range.getStartOffset(), edit.range.getEndOffset(), edit.replacement);
+                    }
+                }
+            });
+        }
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+        for (List<Edit> fileEdits : edits.values()) {
+            for (Edit edit : fileEdits) {
+                pointerManager.removePointer(edit.pointer);
+            }
+        }
+        edits.clear();
+        documentManager.commitAllDocuments();
+    }
+
+    /**
+     * @return edits of valid elements sorted by offset, edits inside other edits are dropped
+     */
+    private static List<Edit> prepare(List<Edit> fileEdits, Document document) {
+        List<Edit> sorted = new ArrayList<>();
+        for (Edit edit : fileEdits) {
+            PsiElement element = getElement(edit);
+            if (element != null) {
+                TextRange range = element.getTextRange();
+                edit.range = edit.replacement == null ? expandToLines(range, document.getCharsSequence()) : range;
+                sorted.add(edit);
+            }
+        }
+        sorted.sort(Comparator.<Edit>comparingInt(edit -> edit.range.getStartOffset())
+                .thenComparing(edit -> -edit.range.getLength()));
+        List<Edit> result = new ArrayList<>();
+        int end = -1;
+        for (Edit edit : sorted) {
+            if (edit.range.getStartOffset() < end) {
+                continue;
+            }
+            result.add(edit);
+            end = edit.range.getEndOffset();
+        }
+        return result;
+    }
+
+    /**
+     * @return the element of the edit, null if it was removed by a change made after the edit was collected
+     */
+    @Nullable
+    private static PsiElement getElement(Edit edit) {
+        PsiElement element = edit.pointer.getElement();
+        if (element == null) {
+            LOG.warn(String.format("%s: edit dropped, the element was removed after it was collected", edit.description));
+        }
+        return element;
+    }
+
+    /**
+     * @return the range with the indent before it and the line break after it, if the range is alone on its lines
+     */
+    static TextRange expandToLines(TextRange range, CharSequence text) {
+        int start = range.getStartOffset();
+        while (start > 0 && isBlank(text.charAt(start - 1))) {
+            start--;
+        }
+        int end = range.getEndOffset();
+        while (end < text.length() && isBlank(text.charAt(end))) {
+            end++;
+        }
+        boolean lineStart = start == 0 || text.charAt(start - 1) == '\n';
+        boolean lineEnd = end == text.length() || text.charAt(end) == '\n';
+        if (!lineStart || !lineEnd) {
+            return range;
+        }
+        return new TextRange(start, end < text.length() ? end + 1 : end);
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private void applyToPsi(List<Edit> fileEdits) {
+        for (Edit edit : fileEdits) {
+            PsiElement element = getElement(edit);
+            if (element == null) {
+                continue;
+            }
+            if (edit.replacement == null) {
+                element.delete();
+            } else if (element instanceof PsiExpression) {
+                PsiExpression expression = JavaPsiFacade.getElementFactory(project)
+                        .createExpressionFromText(edit.replacement, element);
+                element.replace(expression);
+            } else {
+                LOG.warn(String.format("can't replace element without document: %s", element));
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiModifierList;
+import com.intellij.psi.search.searches.ClassInheritorsSearch;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+/**
+ * Decides whether a class can be converted to a static utility class.
+ * All methods require a read action and don't modify PSI, so they are safe to call from background threads.
+ * The checks use only the structure kept in stubs (supertypes, modifiers, annotations, members), so screening
+ * a class doesn't load the AST of its file.
+ * Verdicts are cached on the class until the next change of Java structure in the project,
+ * so re-running the action after fixing one class doesn't re-check all the others.
+ */
+public final class ClassEligibilityChecker {
+
+    private static final Key<CachedValue<Optional<SkipReason>>> LOCAL_SKIP_REASON = Key.create("ejectdi.localSkipReason");
+    private static final Key<CachedValue<Boolean>> HAS_IMPLEMENTATIONS = Key.create("ejectdi.hasImplementations");
+
+    private ClassEligibilityChecker() {
+    }
+
+    /**
+     * @return true for regular classes, i.e. not enums, interfaces or annotation types
+     */
+    public static boolean isCandidateClass(@NotNull PsiClass psiClass) {
+        return !psiClass.isEnum() && !psiClass.isAnnotationType() && !psiClass.isInterface();
+    }
+
+    /**
+     * @param implementationsNanos receives the time spent on the search of implementations, if they were searched
+     * @return the reason why the class can't be converted or null if it is stateless and can be converted
+     */
+    @Nullable
+    public static SkipReason findSkipReason(@NotNull PsiClass psiClass, @NotNull LongConsumer implementationsNanos) {
+        SkipReason skipReason = getLocalSkipReason(psiClass);
+        if (skipReason != null) {
+            return skipReason;
+        }
+        long start = System.nanoTime();
+        boolean hasImplementations = getHasImplementations(psiClass);
+        implementationsNanos.accept(System.nanoTime() - start);
+        return hasImplementations ? SkipReason.HAS_IMPLEMENTATIONS : null;
+    }
+
+    /**
+     * Cached version of {@link #findLocalSkipReason(PsiClass)}, must be called for physical classes only.
+     */
+    @Nullable
+    public static SkipReason getLocalSkipReason(@NotNull PsiClass psiClass) {
+        // provider gets psiClass from the holder, the cached value keeps the first provider for recomputation
+        return CachedValuesManager.getCachedValue(psiClass, LOCAL_SKIP_REASON,
+                () -> CachedValueProvider.Result.create(Optional.ofNullable(findLocalSkipReason(psiClass)),
+                        PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT))
+                .orElse(null);
+    }
+
+    private static boolean getHasImplementations(@NotNull PsiClass psiClass) {
+        // inheritors are declared in other files, but adding or removing one changes Java structure as well
+        // a cancelled search throws out of the provider, so its result is never cached
+        return CachedValuesManager.getCachedValue(psiClass, HAS_IMPLEMENTATIONS, () -> {
+            boolean hasImplementations = hasImplementations(psiClass);
+            // the search may have finished just as the read action was cancelled
+            ProgressManager.checkCanceled();
+            return CachedValueProvider.Result.create(hasImplementations, PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+        });
+    }
+
+    /**
+     * Runs the checks that depend only on the class itself, i.e. everything except the search of implementations.
+     * Annotations are matched by their short names without resolving, so it's safe to call from an indexer.
+     *
+     * @return the reason why the class can't be converted or null if the class passes all local checks
+     */
+    @Nullable
+    public static SkipReason findLocalSkipReason(@NotNull PsiClass psiClass) {
+        // todo all checks below should be configurable in modal window
+        if (psiClass.getImplementsListTypes().length > 0) {
+            return SkipReason.IMPLEMENTS_INTERFACE;
+        }
+        if (psiClass.getExtendsListTypes().length > 0) {
+            return SkipReason.EXTENDS_CLASS;
+        }
+        if (psiClass.hasModifierProperty(PsiModifier.ABSTRACT)) {
+            return SkipReason.ABSTRACT;
+        }
+        if (hasAnnotation(psiClass, "Specification")) {
+            return SkipReason.SPECIFICATION_ANNOTATION;
+        }
+        // the class has no supertypes at this point, so own members are all members
+        if (psiClass.getInnerClasses().length != 0) {
+            return SkipReason.INNER_CLASSES;
+        }
+        if (psiClass.getConstructors().length > 1) {
+            return SkipReason.MULTIPLE_CONSTRUCTORS;
+        }
+        if (psiClass.getConstructors().length == 1 && psiClass.getConstructors()[0].getParameterList().getParametersCount() > 0) {
+            return SkipReason.CONSTRUCTOR_PARAMETERS;
+        }
+        // final constants and loggers are made static by the conversion
+        boolean stateless = Arrays.stream(psiClass.getFields()).allMatch(StatelessFields::isStateless);
+        return stateless ? null : SkipReason.STATEFUL;
+    }
+
+    /**
+     * @return true if the class is annotated with an annotation which short name ends with the given suffix
+     */
+    public static boolean hasAnnotation(@NotNull PsiClass psiClass, @NotNull String nameSuffix) {
+        return !findAnnotations(psiClass, nameSuffix).isEmpty();
+    }
+
+    /**
+     * @return annotations of the class which short names end with the given suffix, annotations of members aren't included
+     */
+    @NotNull
+    static List<PsiAnnotation> findAnnotations(@NotNull PsiClass psiClass, @NotNull String nameSuffix) {
+        List<PsiAnnotation> annotations = new ArrayList<>();
+        PsiModifierList modifierList = psiClass.getModifierList();
+        if (modifierList == null) {
+            return annotations;
+        }
+        // annotations are kept in the stub of the modifier list, their references are parsed from the stub text
+        for (PsiAnnotation annotation : modifierList.getAnnotations()) {
+            PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+            String name = reference != null ? reference.getReferenceName() : null;
+            if (name != null && name.endsWith(nameSuffix)) {
+                annotations.add(annotation);
+            }
+        }
+        return annotations;
+    }
+
+    /**
+     * Searches the first inheritor only. Throws {@link com.intellij.openapi.progress.ProcessCanceledException}
+     * if the read action is cancelled, a cancelled search doesn't tell anything about the inheritors.
+     */
+    static boolean hasImplementations(PsiClass psiClass) {
+        if (!ClassHierarchyCache.mayHaveInheritors(psiClass)) {
+            return false;
+        }
+        return ClassInheritorsSearch.search(psiClass, false).findFirst() != null;
+    }
+}
@@ -0,0 +1,62 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.impl.java.stubs.index.JavaStubIndexKeys;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Short names of all classes that are extended, implemented or used as a base of an anonymous class somewhere
+ * in the project. The set is collected from the stub indexes in a single pass and cached until the next change
+ * of Java structure (typing inside method bodies doesn't drop it), so checking a class is a set lookup instead
+ * of an inheritor search.
+ */
+final class ClassHierarchyCache {
+
+    private static final Key<CachedValue<Set<String>>> SUPER_CLASS_NAMES = Key.create("ejectdi.superClassNames");
+
+    private ClassHierarchyCache() {
+    }
+
+    /**
+     * @return false if the class certainly has no inheritors, true if there may be some
+     * (another class with the same short name may be the one that is extended)
+     */
+    static boolean mayHaveInheritors(@NotNull PsiClass psiClass) {
+        String name = psiClass.getName();
+        return name != null && getSuperClassNames(psiClass.getProject()).contains(name);
+    }
+
+    @NotNull
+    private static Set<String> getSuperClassNames(@NotNull Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(project, SUPER_CLASS_NAMES,
+                () -> CachedValueProvider.Result.create(collectSuperClassNames(project),
+                        PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT),
+                false);
+    }
+
+    @NotNull
+    private static Set<String> collectSuperClassNames(@NotNull Project project) {
+        Set<String> names = new HashSet<>();
+        StubIndex stubIndex = StubIndex.getInstance();
+        stubIndex.processAllKeys(JavaStubIndexKeys.SUPER_CLASSES, project, name -> {
+            names.add(name);
+            return true;
+        });
+        stubIndex.processAllKeys(JavaStubIndexKeys.ANONYMOUS_BASEREF, project, name -> {
+            names.add(name);
+            return true;
+        });
+        return Collections.unmodifiableSet(names);
+    }
+}
@@ -0,0 +1,168 @@
+package com.bavelsoft.ejectdi;
+
+import com.bavelsoft.ejectdi.EjectDIRunner.ClassSource;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Factory methods for the usual {@link ClassSource}s.
+ */
+public final class ClassSources {
+
+    private ClassSources() {
+    }
+
+    /**
+     * A source for a class, a file or a directory selected by the user.
+     *
+     * @return null if classes of the element can't be converted
+     */
+    @Nullable
+    public static ClassSource forElement(@NotNull PsiElement element) {
+        if (element instanceof PsiClass) {
+            return forClass((PsiClass) element);
+        } else if (element instanceof PsiFile) {
+            return forFile((PsiFile) element);
+        } else if (element instanceof PsiDirectory) {
+            return forDirectory((PsiDirectory) element);
+        }
+        return null;
+    }
+
+    /**
+     * A single class, other classes of its file are ignored.
+     */
+    @NotNull
+    public static ClassSource forClass(@NotNull PsiClass psiClass) {
+        SmartPsiElementPointer<PsiClass> pointer = SmartPointerManager.getInstance(psiClass.getProject()).createSmartPsiElementPointer(psiClass);
+        VirtualFile file = psiClass.getContainingFile().getVirtualFile();
+        return new ClassSource() {
+            @Override
+            public void processFiles(@NotNull Processor<VirtualFile> processor) {
+                if (file != null) {
+                    processor.process(file);
+                }
+            }
+
+            @Override
+            public boolean accept(@NotNull PsiClass candidate) {
+                return candidate.equals(pointer.getElement());
+            }
+        };
+    }
+
+    /**
+     * All top-level classes of the file.
+     */
+    @NotNull
+    public static ClassSource forFile(@NotNull PsiFile psiFile) {
+        VirtualFile file = psiFile.getVirtualFile();
+        return processor -> {
+            if (file != null) {
+                processor.process(file);
+            }
+        };
+    }
+
+    /**
+     * All top-level classes of java files in the directory and its subdirectories. Files are taken from
+     * {@link FileTypeIndex}, so neither non-java files nor the directory tree itself are loaded into PSI.
+     */
+    @NotNull
+    public static ClassSource forDirectory(@NotNull PsiDirectory psiDirectory) {
+        return forScope(GlobalSearchScopesCore.directoryScope(psiDirectory, true));
+    }
+
+    /**
+     * All top-level classes of java files in the scope.
+     */
+    @NotNull
+    public static ClassSource forScope(@NotNull GlobalSearchScope scope) {
+        return processor -> FileBasedIndex.getInstance().processValues(FileTypeIndex.NAME, JavaFileType.INSTANCE, null,
+                (file, value) -> processor.process(file), scope);
+    }
+
+    /**
+     * Project classes with the given qualified names.
+     */
+    @NotNull
+    public static ClassSource forClassNames(@NotNull Project project, @NotNull Set<String> qualifiedNames) {
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        return new ClassSource() {
+            @Override
+            public void processFiles(@NotNull Processor<VirtualFile> processor) {
+                JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+                Set<VirtualFile> files = new HashSet<>();
+                for (String qualifiedName : qualifiedNames) {
+                    PsiClass psiClass = facade.findClass(qualifiedName, scope);
+                    VirtualFile file = psiClass != null ? psiClass.getContainingFile().getVirtualFile() : null;
+                    if (file != null && files.add(file) && !processor.process(file)) {
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public boolean accept(@NotNull PsiClass psiClass) {
+                return qualifiedNames.contains(psiClass.getQualifiedName());
+            }
+        };
+    }
+
+    /**
+     * Classes left by an interrupted run: all classes of the files that were not analyzed and the pending classes.
+     */
+    @NotNull
+    public static ClassSource forPending(@NotNull Project project, @NotNull Set<String> fileUrls,
+                                         @NotNull Set<String> qualifiedNames) {
+        ClassSource classes = forClassNames(project, qualifiedNames);
+        return new ClassSource() {
+            @Override
+            public void processFiles(@NotNull Processor<VirtualFile> processor) {
+                VirtualFileManager fileManager = VirtualFileManager.getInstance();
+                Set<VirtualFile> files = new HashSet<>();
+                for (String url : fileUrls) {
+                    VirtualFile file = fileManager.findFileByUrl(url);
+                    if (file != null && file.isValid() && files.add(file) && !processor.process(file)) {
+                        return;
+                    }
+                }
+                classes.processFiles(file -> !files.add(file) || processor.process(file));
+            }
+
+            @Override
+            public boolean accept(@NotNull PsiClass psiClass) {
+                VirtualFile file = psiClass.getContainingFile().getVirtualFile();
+                return file != null && fileUrls.contains(file.getUrl()) || classes.accept(psiClass);
+            }
+        };
+    }
+
+    /**
+     * All classes of the project found in {@link StatelessCandidateIndex}.
+     */
+    @NotNull
+    public static ClassSource forIndexedCandidates(@NotNull Project project) {
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        return processor -> StatelessCandidateIndex.processCandidateFiles(project, scope, processor);
+    }
+}
@@ -0,0 +1,143 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checkpoints of conversion runs kept in the workspace of the project: files not analyzed yet, classes waiting
+ * for conversion, converted classes and failures with their reasons. A run that was cancelled or stopped by an
+ * error leaves pending files and classes behind, {@link EjectDIRunner#resume} analyzes and converts only those,
+ * so a long migration doesn't start over. A run that finishes normally drops only its own pending entries,
+ * the entries of an interrupted run are kept until it is resumed.
+ */
+@State(name = "EjectDIJournal", storages = @Storage(StoragePathMacros.WORKSPACE_FILE))
+public class ConversionJournal implements PersistentStateComponent<ConversionJournal.JournalState> {
+
+    public static class JournalState {
+        public Set<String> pendingFiles = new LinkedHashSet<>();
+        public Set<String> pending = new LinkedHashSet<>();
+        public Set<String> completed = new LinkedHashSet<>();
+        public Map<String, String> failed = new LinkedHashMap<>();
+
+        @NotNull
+        private JournalState copy() {
+            JournalState copy = new JournalState();
+            copy.pendingFiles.addAll(pendingFiles);
+            copy.pending.addAll(pending);
+            copy.completed.addAll(completed);
+            copy.failed.putAll(failed);
+            return copy;
+        }
+    }
+
+    private JournalState state = new JournalState();
+
+    public static ConversionJournal getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, ConversionJournal.class);
+    }
+
+    @NotNull
+    @Override
+    public synchronized JournalState getState() {
+        // the state is serialized after the lock is released, while a run may still change it
+        return state.copy();
+    }
+
+    @Override
+    public synchronized void loadState(JournalState state) {
+        this.state = state;
+    }
+
+    /**
+     * Forgets the previous run unless it was interrupted, pending entries are only dropped by the run that
+     * recorded them or by {@link EjectDIRunner#resume}.
+     */
+    synchronized void started() {
+        if (!canResume()) {
+            state = new JournalState();
+        }
+    }
+
+    /**
+     * Records the files of a run before they are analyzed, so an interruption during the analysis can be resumed.
+     */
+    synchronized void pendingFiles(@NotNull Collection<String> urls) {
+        state.pendingFiles.addAll(urls);
+    }
+
+    /**
+     * The classes of the files are either pending or skipped now.
+     */
+    synchronized void analyzed(@NotNull Collection<String> urls) {
+        state.pendingFiles.removeAll(urls);
+    }
+
+    synchronized void pending(@NotNull Collection<String> qualifiedNames) {
+        for (String qualifiedName : qualifiedNames) {
+            if (!state.completed.contains(qualifiedName) && !state.failed.containsKey(qualifiedName)) {
+                state.pending.add(qualifiedName);
+            }
+        }
+    }
+
+    synchronized void completed(@NotNull String qualifiedName) {
+        state.pending.remove(qualifiedName);
+        state.completed.add(qualifiedName);
+    }
+
+    synchronized void failed(@NotNull String qualifiedName, @NotNull String reason) {
+        state.pending.remove(qualifiedName);
+        state.failed.put(qualifiedName, reason);
+    }
+
+    /**
+     * Converted classes are kept until they are finished, i.e. made final with a private constructor,
+     * so a resumed run finishes the classes converted before the interruption.
+     */
+    synchronized void classesFinished(@NotNull Collection<String> qualifiedNames) {
+        state.completed.removeAll(qualifiedNames);
+    }
+
+    /**
+     * Drops pending entries of a run that went through, e.g. dependents that never became stateless.
+     */
+    synchronized void finished(@NotNull Collection<String> urls, @NotNull Collection<String> qualifiedNames) {
+        state.pendingFiles.removeAll(urls);
+        state.pending.removeAll(qualifiedNames);
+    }
+
+    public synchronized boolean canResume() {
+        return !state.pendingFiles.isEmpty() || !state.pending.isEmpty();
+    }
+
+    @NotNull
+    public synchronized Set<String> getPendingFiles() {
+        return new LinkedHashSet<>(state.pendingFiles);
+    }
+
+    @NotNull
+    public synchronized Set<String> getPending() {
+        return new LinkedHashSet<>(state.pending);
+    }
+
+    @NotNull
+    public synchronized Set<String> getCompleted() {
+        return new LinkedHashSet<>(state.completed);
+    }
+
+    @NotNull
+    public synchronized Map<String, String> getFailed() {
+        return new LinkedHashMap<>(state.failed);
+    }
+}
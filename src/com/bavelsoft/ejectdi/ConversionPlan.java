@@ -0,0 +1,276 @@
+package com.bavelsoft.ejectdi;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of the analysis that can be saved, reviewed and applied later without analyzing the project again:
+ * classes to convert with their methods and fields, the declarations and the injection points to remove.
+ * Every element is stored as a file, an offset and a hash of its text, so the plan is checked against
+ * the current sources before it is applied.
+ * <p>
+ * A plan covers the classes that can be converted right now, dependents that become stateless after
+ * the conversion are found by planning again.
+ */
+public class ConversionPlan {
+
+    private static final int PREVIEW_LENGTH = 120;
+
+    private final List<ClassItem> classes = new ArrayList<>();
+
+    /**
+     * A class to convert.
+     */
+    public static class ClassItem {
+        private final String qualifiedName;
+        private final Location location;
+        private final List<String> methods = new ArrayList<>();
+        private final List<String> staticFields = new ArrayList<>();
+        private final List<Location> declarations = new ArrayList<>();
+        private final List<Location> injectionPoints = new ArrayList<>();
+
+        private ClassItem(String qualifiedName, Location location) {
+            this.qualifiedName = qualifiedName;
+            this.location = location;
+        }
+
+        // for Gson, so the lists missing in a saved plan are empty
+        @SuppressWarnings("unused")
+        private ClassItem() {
+            this(null, null);
+        }
+
+        @NotNull
+        public String getQualifiedName() {
+            return qualifiedName;
+        }
+
+        @NotNull
+        public Location getLocation() {
+            return location;
+        }
+
+        /**
+         * @return names of the methods to make static, apply fails the class if they don't match the sources
+         */
+        @NotNull
+        public List<String> getMethods() {
+            return methods;
+        }
+
+        /**
+         * @return names of the final fields to make static, apply fails the class if they don't match the sources
+         */
+        @NotNull
+        public List<String> getStaticFields() {
+            return staticFields;
+        }
+
+        /**
+         * @return instance declarations (local variables, fields, parameters) of the class to remove
+         */
+        @NotNull
+        public List<Location> getDeclarations() {
+            return declarations;
+        }
+
+        /**
+         * @return injected fields and parameters, their assignments and provider methods to remove
+         */
+        @NotNull
+        public List<Location> getInjectionPoints() {
+            return injectionPoints;
+        }
+    }
+
+    /**
+     * Position of an element in a file with the hash of the element text,
+     * the first line of the text is kept for review only.
+     */
+    public static class Location {
+        private final String fileUrl;
+        private final int offset;
+        private final int length;
+        private final String hash;
+        private final String preview;
+
+        private Location(String fileUrl, int offset, int length, String hash, String preview) {
+            this.fileUrl = fileUrl;
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+            this.preview = preview;
+        }
+
+        @Nullable
+        static Location create(@NotNull PsiElement element) {
+            PsiFile psiFile = element.getContainingFile();
+            VirtualFile file = psiFile != null ? psiFile.getVirtualFile() : null;
+            if (file == null) {
+                return null;
+            }
+            TextRange range = element.getTextRange();
+            String text = element.getText();
+            String preview = text.trim();
+            if (preview.indexOf('\n') >= 0) {
+                preview = preview.substring(0, preview.indexOf('\n')).trim();
+            }
+            preview = StringUtil.first(preview, PREVIEW_LENGTH, true);
+            return new Location(file.getUrl(), range.getStartOffset(), range.getLength(), hash(text), preview);
+        }
+
+        /**
+         * Must be called inside a read action.
+         *
+         * @return the element of the given type at the location or null if the file was changed since the plan was made
+         */
+        @Nullable
+        <T extends PsiElement> T resolve(@NotNull Project project, @NotNull Class<T> elementClass) {
+            VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(fileUrl);
+            PsiFile psiFile = file != null && file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+            if (psiFile == null) {
+                return null;
+            }
+            TextRange range = TextRange.from(offset, length);
+            for (PsiElement element = psiFile.findElementAt(offset); element != null && !(element instanceof PsiFile);
+                 element = element.getParent()) {
+                TextRange elementRange = element.getTextRange();
+                if (elementRange.getEndOffset() > range.getEndOffset() || elementRange.getStartOffset() < offset) {
+                    return null;
+                }
+                if (elementRange.equals(range) && elementClass.isInstance(element) && hash.equals(hash(element.getText()))) {
+                    return elementClass.cast(element);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s:%d", fileUrl, offset);
+        }
+    }
+
+    /**
+     * Must be called inside a read action.
+     *
+     * @param declarations    declarations of instances of the class found by {@link ReferenceScanner}
+     * @param injectionPoints declarations found by {@link InjectionPoints}
+     */
+    void add(@NotNull String qualifiedName, @NotNull Location location, @NotNull List<PsiMethod> methods,
+             @NotNull List<PsiField> staticFields, @NotNull List<PsiElement> declarations,
+             @NotNull List<PsiElement> injectionPoints) {
+        ClassItem item = new ClassItem(qualifiedName, location);
+        for (PsiMethod method : methods) {
+            item.methods.add(method.getName());
+        }
+        for (PsiField field : staticFields) {
+            item.staticFields.add(field.getName());
+        }
+        for (PsiElement declaration : declarations) {
+            ContainerUtil.addIfNotNull(item.declarations, Location.create(declaration));
+        }
+        for (PsiElement injectionPoint : injectionPoints) {
+            ContainerUtil.addIfNotNull(item.injectionPoints, Location.create(injectionPoint));
+        }
+        classes.add(item);
+    }
+
+    @NotNull
+    public List<ClassItem> getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return a plan of the given classes only, in the given order
+     */
+    @NotNull
+    public ConversionPlan retain(@NotNull List<String> qualifiedNames) {
+        ConversionPlan plan = new ConversionPlan();
+        for (String qualifiedName : qualifiedNames) {
+            for (ClassItem item : classes) {
+                if (item.qualifiedName.equals(qualifiedName)) {
+                    plan.classes.add(item);
+                }
+            }
+        }
+        return plan;
+    }
+
+    public int getDeclarationCount() {
+        return classes.stream().mapToInt(item -> item.declarations.size() + item.injectionPoints.size()).sum();
+    }
+
+    @NotNull
+    public String toJson() {
+        return new GsonBuilder().setPrettyPrinting().create().toJson(this);
+    }
+
+    @NotNull
+    public static ConversionPlan fromJson(@NotNull String json) {
+        ConversionPlan plan = new Gson().fromJson(json, ConversionPlan.class);
+        if (plan == null) {
+            throw new IllegalArgumentException("plan is empty");
+        }
+        plan.checkLoaded();
+        return plan;
+    }
+
+    /**
+     * A saved plan may be edited by hand or written by an older version, the values apply relies on must be there.
+     */
+    private void checkLoaded() {
+        if (classes == null) {
+            throw new IllegalArgumentException("plan has no classes");
+        }
+        for (ClassItem item : classes) {
+            if (item == null || item.qualifiedName == null) {
+                throw new IllegalArgumentException("plan has a class without a name");
+            }
+            if (item.methods == null || item.staticFields == null || item.declarations == null || item.injectionPoints == null) {
+                throw new IllegalArgumentException(String.format("%s: class has a list set to null in the plan", item.qualifiedName));
+            }
+            if (!isComplete(item.location)) {
+                throw new IllegalArgumentException(String.format("%s: class location is incomplete", item.qualifiedName));
+            }
+            for (Location location : ContainerUtil.concat(item.declarations, item.injectionPoints)) {
+                if (!isComplete(location)) {
+                    throw new IllegalArgumentException(String.format("%s: declaration location is incomplete", item.qualifiedName));
+                }
+            }
+        }
+    }
+
+    private static boolean isComplete(@Nullable Location location) {
+        return location != null && location.fileUrl != null && location.hash != null;
+    }
+
+    @NotNull
+    private static String hash(@NotNull String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return StringUtil.toHexString(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.bavelsoft.ejectdi;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a single run: converted classes, skipped classes with the reasons, failures and {@link RunMetrics}.
+ * Filled concurrently by the analysis, serialized to JSON by the headless mode and the tool window.
+ */
+public class ConversionReport {
+
+    private final transient RunMetrics metrics = new RunMetrics();
+
+    private final List<String> converted = new ArrayList<>();
+    private final Map<String, Skip> skipped = new LinkedHashMap<>();
+    private final Map<String, String> failed = new LinkedHashMap<>();
+    private boolean cancelled;
+    // an unexpected error that stopped the run
+    private String error;
+
+    private static class Skip {
+        private final SkipReason reason;
+        private final String message;
+
+        private Skip(SkipReason reason) {
+            this.reason = reason;
+            this.message = reason.getMessage();
+        }
+    }
+
+    synchronized void converted(@NotNull String qualifiedName) {
+        // a dependent class is skipped at first and converted after its dependencies
+        Skip skip = skipped.remove(qualifiedName);
+        if (skip != null) {
+            metrics.unskipped(skip.reason);
+        }
+        converted.add(qualifiedName);
+        metrics.converted();
+    }
+
+    synchronized void skipped(@NotNull String qualifiedName, @NotNull SkipReason reason) {
+        skipped.put(qualifiedName, new Skip(reason));
+        metrics.skipped(reason);
+    }
+
+    synchronized void failed(@NotNull String qualifiedName, @NotNull String reason) {
+        failed.put(qualifiedName, reason);
+    }
+
+    synchronized void cancelled() {
+        cancelled = true;
+    }
+
+    synchronized void error(@NotNull String message) {
+        error = message;
+    }
+
+    @NotNull
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    public synchronized List<String> getConverted() {
+        return new ArrayList<>(converted);
+    }
+
+    public synchronized int getSkippedCount() {
+        return skipped.size();
+    }
+
+    public synchronized int getFailedCount() {
+        return failed.size();
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Nullable
+    public synchronized String getError() {
+        return error;
+    }
+
+    @NotNull
+    public synchronized String toJson() {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        JsonObject json = gson.toJsonTree(this).getAsJsonObject();
+        json.add("metrics", gson.toJsonTree(metrics.snapshot()));
+        return gson.toJson(json);
+    }
+
+    @NotNull
+    public synchronized String format() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("converted: %d, skipped: %d, failed: %d%s%n%n",
+                converted.size(), skipped.size(), failed.size(), cancelled ? " (cancelled)" : ""));
+        if (error != null) {
+            builder.append(String.format("error: %s%n%n", error));
+        }
+        builder.append(metrics.format());
+        if (!failed.isEmpty()) {
+            builder.append(String.format("%nfailed:%n"));
+            for (Map.Entry<String, String> entry : failed.entrySet()) {
+                builder.append(String.format("  %s: %s%n", entry.getKey(), entry.getValue()));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.codeInspection.BaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiIdentifier;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Highlights injectable singletons that can be replaced with static utility classes.
+ * Only the cached local checks and the cached {@link ClassHierarchyCache} lookup run while highlighting,
+ * the search of implementations and usages is done by the quick fix in background.
+ */
+public class ConvertibleSingletonInspection extends BaseJavaLocalInspectionTool {
+
+    @Nls
+    @NotNull
+    @Override
+    public String getGroupDisplayName() {
+        return "Eject DI";
+    }
+
+    @Nls
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return "Singleton can be replaced with static utility class";
+    }
+
+    @Nullable
+    @Override
+    public ProblemDescriptor[] checkClass(@NotNull PsiClass aClass, @NotNull InspectionManager manager, boolean isOnTheFly) {
+        if (!(aClass.getParent() instanceof PsiFile) || !ClassEligibilityChecker.isCandidateClass(aClass)) {
+            return null;
+        }
+        // only injectable classes are interesting, otherwise every class without fields would be highlighted
+        if (!ClassEligibilityChecker.hasAnnotation(aClass, "Singleton")) {
+            return null;
+        }
+        if (ClassEligibilityChecker.getLocalSkipReason(aClass) != null) {
+            return null;
+        }
+        // cached lookup, may skip a class which only shares its name with an extended one
+        if (ClassHierarchyCache.mayHaveInheritors(aClass)) {
+            return null;
+        }
+        PsiIdentifier nameIdentifier = aClass.getNameIdentifier();
+        if (nameIdentifier == null) {
+            return null;
+        }
+        return new ProblemDescriptor[]{
+                manager.createProblemDescriptor(nameIdentifier, "Stateless singleton <code>#ref</code> can be a static utility class",
+                        new ReplaceDIWithStaticFix(), ProblemHighlightType.GENERIC_ERROR_OR_WARNING, isOnTheFly)
+        };
+    }
+
+    private static class ReplaceDIWithStaticFix implements LocalQuickFix {
+
+        @Nls
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Replace DI with static";
+        }
+
+        @Override
+        public boolean startInWriteAction() {
+            return false;
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiElement element = descriptor.getPsiElement();
+            PsiClass psiClass = PsiTreeUtil.getParentOfType(element, PsiClass.class);
+            if (psiClass == null) {
+                return;
+            }
+            new EjectDIRunner(project).run(ClassSources.forClass(psiClass));
+        }
+    }
+}
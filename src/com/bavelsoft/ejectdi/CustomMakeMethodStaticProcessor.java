@@ -1,11 +1,19 @@
 package com.bavelsoft.ejectdi;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Ref;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
 import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiThisExpression;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.refactoring.makeStatic.MakeMethodStaticProcessor;
 import com.intellij.refactoring.makeStatic.Settings;
 import com.intellij.usageView.UsageInfo;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -13,6 +21,9 @@ import java.util.Set;
  */
 public class CustomMakeMethodStaticProcessor extends MakeMethodStaticProcessor {
 
+    // external references found by MakeClassStaticProcessor for all methods at once, searched here if null
+    private List<PsiElement> externalReferences;
+
     public CustomMakeMethodStaticProcessor(Project project, PsiMethod method, Settings settings) {
         super(project, method, settings);
     }
@@ -21,4 +32,39 @@ public class CustomMakeMethodStaticProcessor extends MakeMethodStaticProcessor {
     protected boolean findAdditionalMembers(Set<UsageInfo> toMakeStatic) {
         return true;
     }
+
+    @Override
+    protected void findExternalUsages(ArrayList<UsageInfo> result) {
+        if (externalReferences == null) {
+            super.findExternalUsages(result);
+            return;
+        }
+        // same filter as the search of the base class: calls inside the method itself are internal usages
+        for (PsiElement element : externalReferences) {
+            PsiExpression qualifier = element instanceof PsiReferenceExpression
+                    ? ((PsiReferenceExpression) element).getQualifierExpression() : null;
+            if (!PsiTreeUtil.isAncestor(myMember, element, true) || qualifier != null && !(qualifier instanceof PsiThisExpression)) {
+                result.add(new UsageInfo(element));
+            }
+        }
+    }
+
+    // the methods below expose the processor phases to MakeClassStaticProcessor,
+    // which runs several method processors as a single refactoring
+
+    void setExternalReferences(List<PsiElement> references) {
+        externalReferences = references;
+    }
+
+    UsageInfo[] collectUsages() {
+        return findUsages();
+    }
+
+    boolean preprocess(Ref<UsageInfo[]> refUsages) {
+        return preprocessUsages(refUsages);
+    }
+
+    void applyUsages(UsageInfo[] usages) {
+        performRefactoring(usages);
+    }
 }
@@ -5,6 +5,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.Conditions;
 import com.intellij.openapi.util.Ref;
 import com.intellij.psi.*;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -57,17 +58,6 @@ public class CustomSafeDeleteProcessor extends BaseRefactoringProcessor {
         return new SafeDeleteUsageViewDescriptor(myElements);
     }
 
-    private static boolean isInside(PsiElement place, PsiElement[] ancestors) {
-        return isInside(place, Arrays.asList(ancestors));
-    }
-
-    private static boolean isInside(PsiElement place, Collection<? extends PsiElement> ancestors) {
-        for (PsiElement element : ancestors) {
-            if (isInside(place, element)) return true;
-        }
-        return false;
-    }
-
     public static boolean isInside(PsiElement place, PsiElement ancestor) {
         if (ancestor instanceof PsiDirectoryContainer) {
             final PsiDirectory[] directories = ((PsiDirectoryContainer) ancestor).getDirectories(place.getResolveScope());
@@ -108,14 +98,36 @@ public class CustomSafeDeleteProcessor extends BaseRefactoringProcessor {
     @NotNull
     protected UsageInfo[] findUsages() {
         List<UsageInfo> usages = Collections.synchronizedList(new ArrayList<UsageInfo>());
+        final ElementRangeIndex elementsToDelete = new ElementRangeIndex(myElements);
+        final Map<PsiFile, List<PsiElement>> elementsByFile = groupByFile(myElements);
         for (PsiElement element : myElements) {
             boolean handled = false;
             for (SafeDeleteProcessorDelegate delegate : Extensions.getExtensions(SafeDeleteProcessorDelegate.EP_NAME)) {
                 if (delegate.handlesElement(element)) {
-                    final NonCodeUsageSearchInfo filter = delegate.findUsages(element, myElements, usages);
+                    final NonCodeUsageSearchInfo filter;
+                    Condition<PsiElement> insideDeleted;
+                    if (element instanceof PsiVariable) {
+                        // the delegate checks every reference against every element it gets, it gets only
+                        // the elements of the same file and the references inside the others are dropped here
+                        List<UsageInfo> variableUsages = new ArrayList<>();
+                        filter = delegate.findUsages(element, PsiUtilCore.toPsiElementArray(elementsByFile.get(element.getContainingFile())),
+                                variableUsages);
+                        for (UsageInfo usage : variableUsages) {
+                            if (!(usage instanceof SafeDeleteReferenceUsageInfo) || usage.getElement() == null
+                                    || !elementsToDelete.contains(usage.getElement())) {
+                                usages.add(usage);
+                            }
+                        }
+                        insideDeleted = filter != null
+                                ? Conditions.or(filter.getInsideDeletedCondition(), getDefaultInsideDeletedCondition(elementsToDelete))
+                                : null;
+                    } else {
+                        filter = delegate.findUsages(element, myElements, usages);
+                        insideDeleted = filter != null ? filter.getInsideDeletedCondition() : null;
+                    }
                     if (filter != null) {
                         for (PsiElement nonCodeUsageElement : filter.getElementsToSearch()) {
-                            addNonCodeUsages(nonCodeUsageElement, usages, filter.getInsideDeletedCondition(), mySearchNonJava,
+                            addNonCodeUsages(nonCodeUsageElement, usages, insideDeleted, mySearchNonJava,
                                     mySearchInCommentsAndStrings);
                         }
                     }
@@ -124,22 +136,38 @@ public class CustomSafeDeleteProcessor extends BaseRefactoringProcessor {
                 }
             }
             if (!handled && element instanceof PsiNamedElement) {
-                findGenericElementUsages(element, usages, myElements);
-                addNonCodeUsages(element, usages, getDefaultInsideDeletedCondition(myElements), mySearchNonJava, mySearchInCommentsAndStrings);
+                findGenericElementUsages(element, usages, elementsToDelete);
+                addNonCodeUsages(element, usages, getDefaultInsideDeletedCondition(elementsToDelete), mySearchNonJava, mySearchInCommentsAndStrings);
             }
         }
         final UsageInfo[] result = usages.toArray(new UsageInfo[usages.size()]);
         return UsageViewUtil.removeDuplicatedUsages(result);
     }
 
+    private static Map<PsiFile, List<PsiElement>> groupByFile(PsiElement[] elements) {
+        Map<PsiFile, List<PsiElement>> result = new HashMap<>();
+        for (PsiElement element : elements) {
+            result.computeIfAbsent(element.getContainingFile(), key -> new ArrayList<>()).add(element);
+        }
+        return result;
+    }
+
     public static Condition<PsiElement> getDefaultInsideDeletedCondition(final PsiElement[] elements) {
-        return usage -> !(usage instanceof PsiFile) && isInside(usage, elements);
+        return getDefaultInsideDeletedCondition(new ElementRangeIndex(elements));
+    }
+
+    private static Condition<PsiElement> getDefaultInsideDeletedCondition(final ElementRangeIndex elements) {
+        return usage -> !(usage instanceof PsiFile) && elements.contains(usage);
     }
 
     public static void findGenericElementUsages(final PsiElement element, final List<UsageInfo> usages, final PsiElement[] allElementsToDelete) {
+        findGenericElementUsages(element, usages, new ElementRangeIndex(allElementsToDelete));
+    }
+
+    private static void findGenericElementUsages(final PsiElement element, final List<UsageInfo> usages, final ElementRangeIndex allElementsToDelete) {
         ReferencesSearch.search(element).forEach(reference -> {
             final PsiElement refElement = reference.getElement();
-            if (!isInside(refElement, allElementsToDelete)) {
+            if (!allElementsToDelete.contains(refElement)) {
                 usages.add(new SafeDeleteReferenceSimpleDeleteUsageInfo(refElement, element, false));
             }
             return true;
@@ -213,20 +241,57 @@ public class CustomSafeDeleteProcessor extends BaseRefactoringProcessor {
                 }
             }
 
+            // whole members and statements are removed as text in one bulk update per file,
+            // the rest (e.g. parameters, which need commas fixed) through PSI
+            BulkDocumentEditor editor = new BulkDocumentEditor(myProject);
             for (PsiElement element : myElements) {
+                if (!element.isValid()) {
+                    continue;
+                }
                 for (SafeDeleteProcessorDelegate delegate : Extensions.getExtensions(SafeDeleteProcessorDelegate.EP_NAME)) {
                     if (delegate.handlesElement(element)) {
                         delegate.prepareForDeletion(element);
                     }
                 }
 
-                element.delete();
+                PsiElement wholeElement = getWholeElement(element);
+                if (wholeElement != null) {
+                    editor.delete(wholeElement);
+                } else {
+                    element.delete();
+                }
             }
+            editor.apply();
         } catch (IncorrectOperationException e) {
             RefactoringUIUtil.processIncorrectOperation(myProject, e);
         }
     }
 
+    /**
+     * @return the element or its declaration statement if it occupies whole lines and can be deleted as text,
+     * otherwise null
+     */
+    @Nullable
+    private static PsiElement getWholeElement(PsiElement element) {
+        if (element instanceof PsiLocalVariable) {
+            PsiElement statement = element.getParent();
+            return statement instanceof PsiDeclarationStatement
+                    && ((PsiDeclarationStatement) statement).getDeclaredElements().length == 1
+                    ? getWholeElement(statement) : null;
+        }
+        if (element instanceof PsiField && !(element instanceof PsiEnumConstant)) {
+            // multiple fields of one declaration are split by prepareForDeletion
+            return element.getParent() instanceof PsiClass && element.getText().endsWith(";") ? element : null;
+        }
+        if (element instanceof PsiMethod) {
+            return element.getParent() instanceof PsiClass ? element : null;
+        }
+        if (element instanceof PsiStatement) {
+            return element.getParent() instanceof PsiCodeBlock ? element : null;
+        }
+        return null;
+    }
+
     private String calcCommandName() {
         return RefactoringBundle.message("safe.delete.command", RefactoringUIUtil.calculatePsiElementDescriptionList(myElements));
     }
@@ -0,0 +1,29 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+
+/**
+ * Converts all classes of the project found in {@link StatelessCandidateIndex}.
+ */
+public class EjectAllCandidatesAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(EjectAllCandidatesAction.class);
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            LOG.error("project is null");
+            return;
+        }
+        new EjectDIRunner(project).run(ClassSources.forIndexedCandidates(project));
+    }
+}
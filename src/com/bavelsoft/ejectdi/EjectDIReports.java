@@ -0,0 +1,40 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the report of the last run in the project and notifies subscribers of {@link #TOPIC} about new reports.
+ */
+public class EjectDIReports {
+
+    public static final Topic<Listener> TOPIC = Topic.create("EjectDI reports", Listener.class);
+
+    public interface Listener {
+        void reportPublished(@NotNull ConversionReport report);
+    }
+
+    private final Project project;
+    private volatile ConversionReport lastReport;
+
+    public EjectDIReports(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static EjectDIReports getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, EjectDIReports.class);
+    }
+
+    @Nullable
+    public ConversionReport getLastReport() {
+        return lastReport;
+    }
+
+    void publish(@NotNull ConversionReport report) {
+        lastReport = report;
+        project.getMessageBus().syncPublisher(TOPIC).reportPublished(report);
+    }
+}
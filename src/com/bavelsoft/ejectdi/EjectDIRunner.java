@@ -0,0 +1,870 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Function;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the refactoring as a pipeline: the analysis enumerates classes and checks their eligibility, then finds
+ * the injection points and references of the eligible ones in one pass of cancellable per-file background read
+ * actions spread across all cores. References are completed batch by batch, and the EDT converts the batches
+ * completed so far while the search goes on. At most {@link #SEARCH_QUEUE_CAPACITY} batches wait for conversion,
+ * so the search doesn't run far ahead of the writes. References of a class that were lost because their files
+ * were modified by the previous conversions are searched again before the class is converted.
+ * <p>
+ * In tests and in the headless mode background tasks run synchronously on the EDT, so there the search
+ * finishes first and the classes are converted in a loop afterwards.
+ * <p>
+ * Conversion is transitive: stateful classes that hold only convertible classes in their fields are tracked
+ * in an {@link InjectionGraph} and checked again once all of their dependencies are converted, until nothing
+ * else can be converted. One runner is used for a single run.
+ * <p>
+ * The analysis can also be saved as a {@link ConversionPlan} and applied later by another runner.
+ * Progress of conversion runs is recorded in the {@link ConversionJournal}, so an interrupted run can be resumed.
+ */
+public class EjectDIRunner {
+
+    private static final Logger LOG = Logger.getInstance(EjectDIRunner.class);
+    private static final int SEARCH_BATCH_SIZE = 50;
+    private static final int SEARCH_QUEUE_CAPACITY = 2;
+
+    /**
+     * Supplies the classes to analyze: all top-level classes of the supplied files accepted by the source.
+     */
+    public interface ClassSource {
+
+        /**
+         * Called from a background thread inside a read action.
+         */
+        void processFiles(@NotNull Processor<VirtualFile> processor);
+
+        default boolean accept(@NotNull PsiClass psiClass) {
+            return true;
+        }
+    }
+
+    private final Project project;
+    private final InjectionGraph graph = new InjectionGraph();
+    private final Deque<ClassConversion> worklist = new ArrayDeque<>();
+    // batches searched in background and not taken to the worklist yet
+    private final BlockingQueue<List<ClassConversion>> searched = new ArrayBlockingQueue<>(SEARCH_QUEUE_CAPACITY);
+    private final AtomicBoolean convertScheduled = new AtomicBoolean();
+    private final Set<SmartPsiElementPointer<PsiClass>> searchedAgain = new HashSet<>();
+    private final ConversionReport report = new ConversionReport();
+    private final ConversionJournal journal;
+    private final boolean pipelined = !runsTasksSynchronously();
+    private StaticClassConverter converter;
+    private boolean resumed;
+    // the run records its progress in the journal, plans don't
+    private boolean journaling;
+    // pending entries recorded by this run, dropped from the journal when it finishes normally
+    private final Set<String> journaledFiles = ContainerUtil.newConcurrentSet();
+    private final Set<String> journaledClasses = ContainerUtil.newConcurrentSet();
+    private Consumer<ConversionReport> onFinished;
+    // the fields below are accessed on the EDT, except finished which also stops the search
+    private boolean searchFinished;
+    private boolean waitingForCheck;
+    private boolean converting;
+    private volatile boolean finished;
+
+    /**
+     * A class to convert with the instance declarations and the declarations injecting it to remove,
+     * which are found before the conversion starts.
+     */
+    private static class ClassConversion {
+        private final SmartPsiElementPointer<PsiClass> pointer;
+        private final List<SmartPsiElementPointer<PsiElement>> declarations;
+        private final List<SmartPsiElementPointer<PsiElement>> injectionPoints;
+
+        private ClassConversion(SmartPsiElementPointer<PsiClass> pointer, List<SmartPsiElementPointer<PsiElement>> declarations,
+                                List<SmartPsiElementPointer<PsiElement>> injectionPoints) {
+            this.pointer = pointer;
+            this.declarations = declarations;
+            this.injectionPoints = injectionPoints;
+        }
+    }
+
+    /**
+     * Outcome of the eligibility check of a class. It's computed in a read action, which is run again if a write
+     * action interrupts it, so it's recorded in the report and the graph only once the read action is done.
+     */
+    private static class ClassVerdict {
+        private final String qualifiedName;
+        // null if the class is skipped and doesn't wait for dependencies
+        private final SmartPsiElementPointer<PsiClass> pointer;
+        private final SkipReason skipReason;
+        // field dependencies of a stateful class which may become stateless
+        private final Set<String> dependencies;
+        private final long implementationsNanos;
+
+        private ClassVerdict(String qualifiedName, SmartPsiElementPointer<PsiClass> pointer, SkipReason skipReason,
+                             Set<String> dependencies, long implementationsNanos) {
+            this.qualifiedName = qualifiedName;
+            this.pointer = pointer;
+            this.skipReason = skipReason;
+            this.dependencies = dependencies;
+            this.implementationsNanos = implementationsNanos;
+        }
+    }
+
+    public EjectDIRunner(@NotNull Project project) {
+        this.project = project;
+        this.journal = ConversionJournal.getInstance(project);
+    }
+
+    /**
+     * @return true if {@link Task.Backgroundable} runs on the calling thread, see {@link Task#isHeadless()}
+     */
+    private static boolean runsTasksSynchronously() {
+        Application application = ApplicationManager.getApplication();
+        return application.isUnitTestMode() || application.isHeadlessEnvironment();
+    }
+
+    public void run(@NotNull ClassSource source) {
+        run(source, null);
+    }
+
+    @NotNull
+    public ConversionReport getReport() {
+        return report;
+    }
+
+    /**
+     * @param onFinished called on the EDT when all classes are processed or the run is cancelled
+     */
+    public void run(@NotNull ClassSource source, @Nullable Consumer<ConversionReport> onFinished) {
+        journal.started();
+        journaling = true;
+        convert(source, onFinished);
+    }
+
+    /**
+     * Continues the run recorded in {@link ConversionJournal}: only the files that were not analyzed and the classes
+     * that were pending when the run stopped are analyzed and converted, converted and failed classes are skipped. Classes of an applied plan
+     * are searched again, as the plan may not match the sources changed by the interrupted run.
+     *
+     * @param onFinished called on the EDT when all classes are processed or the run is cancelled
+     */
+    public void resume(@Nullable Consumer<ConversionReport> onFinished) {
+        resumed = true;
+        journaling = true;
+        Set<String> pendingFiles = journal.getPendingFiles();
+        Set<String> pending = journal.getPending();
+        // the entries are dropped when the run finishes, even if the classes are not eligible anymore
+        journaledFiles.addAll(pendingFiles);
+        journaledClasses.addAll(pending);
+        LOG.info(String.format("resuming conversion of %d files and %d classes, %d classes were converted before",
+                pendingFiles.size(), pending.size(), journal.getCompleted().size()));
+        convert(ClassSources.forPending(project, pendingFiles, pending), onFinished);
+    }
+
+    private void convert(@NotNull ClassSource source, @Nullable Consumer<ConversionReport> onFinished) {
+        this.onFinished = onFinished;
+        converter = new StaticClassConverter(project, report.getMetrics());
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Analyzing classes", true) {
+
+            // batches found when the task runs synchronously, they are converted after the search
+            private final List<ClassConversion> conversions = new ArrayList<>();
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                List<SmartPsiElementPointer<PsiClass>> eligible = analyze(source, indicator);
+                findReferences(eligible, indicator, batch -> {
+                    if (pipelined) {
+                        enqueue(batch, indicator);
+                        scheduleConvertNext();
+                    } else {
+                        conversions.addAll(batch);
+                    }
+                });
+            }
+
+            @Override
+            public void onSuccess() {
+                worklist.addAll(conversions);
+                searchFinished = true;
+                convertNext();
+            }
+
+            @Override
+            public void onCancel() {
+                LOG.info("analysis is cancelled, remaining classes are skipped");
+                searchFinished = true;
+                cancel();
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                searchFinished = true;
+                stop(error);
+            }
+        });
+    }
+
+    /**
+     * Passes a searched batch to the conversion, waits while the queue is full.
+     */
+    private void enqueue(@NotNull List<ClassConversion> batch, @NotNull ProgressIndicator indicator) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            while (!searched.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                indicator.checkCanceled();
+                if (finished) {
+                    // the conversion was cancelled, nobody takes the batches anymore
+                    throw new ProcessCanceledException();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new ProcessCanceledException();
+        }
+    }
+
+    public void plan(@NotNull ClassSource source, @NotNull Consumer<ConversionPlan> onPlanned) {
+        plan(source, onPlanned, null);
+    }
+
+    /**
+     * Runs only the analysis and returns what would be converted, nothing is changed.
+     *
+     * @param onPlanned called on the EDT with the plan, not called if the analysis is cancelled or fails
+     * @param onStopped called on the EDT if the analysis is cancelled or fails
+     */
+    public void plan(@NotNull ClassSource source, @NotNull Consumer<ConversionPlan> onPlanned, @Nullable Runnable onStopped) {
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Analyzing classes", true) {
+
+            private ConversionPlan plan;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                List<ClassConversion> conversions = findReferences(analyze(source, indicator), indicator);
+                indicator.setText("Creating plan");
+                plan = BackgroundReadActions.compute(indicator, () -> createPlan(conversions));
+            }
+
+            @Override
+            public void onSuccess() {
+                LOG.info(String.format("%d classes and %d declarations planned", plan.getClasses().size(), plan.getDeclarationCount()));
+                EjectDIReports.getInstance(project).publish(report);
+                onPlanned.accept(plan);
+            }
+
+            @Override
+            public void onCancel() {
+                LOG.info("analysis is cancelled, no plan was created");
+                report.cancelled();
+                if (onStopped != null) {
+                    onStopped.run();
+                }
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                LOG.warn("analysis failed, no plan was created", error);
+                report.error(String.valueOf(error));
+                EjectDIReports.getInstance(project).publish(report);
+                if (onStopped != null) {
+                    onStopped.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Converts the classes of a plan without analyzing them again. The plan is checked against the current
+     * sources first: classes whose declarations or usages were changed since the plan was made are reported
+     * as failed and left untouched.
+     *
+     * @param onFinished called on the EDT when all classes are processed or the run is cancelled
+     */
+    public void apply(@NotNull ConversionPlan plan, @Nullable Consumer<ConversionReport> onFinished) {
+        this.onFinished = onFinished;
+        journal.started();
+        journaling = true;
+        journalClasses(ContainerUtil.map(plan.getClasses(), ConversionPlan.ClassItem::getQualifiedName));
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Checking plan", true) {
+
+            private List<ClassConversion> conversions = new ArrayList<>();
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                conversions = BackgroundReadActions.compute(indicator, () -> validatePlan(plan));
+            }
+
+            @Override
+            public void onSuccess() {
+                startConversion(conversions);
+            }
+
+            @Override
+            public void onCancel() {
+                LOG.info("plan check is cancelled, no classes were converted");
+                cancel();
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                stop(error);
+            }
+        });
+    }
+
+    @NotNull
+    private List<SmartPsiElementPointer<PsiClass>> analyze(@NotNull ClassSource source, @NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(false);
+        indicator.setText("Collecting files");
+        // only virtual files are collected, PSI is loaded file by file while checking
+        RunMetrics metrics = report.getMetrics();
+        long enumerationStart = System.nanoTime();
+        List<VirtualFile> files = new ArrayList<>();
+        BackgroundReadActions.run(indicator, () -> {
+            files.clear();
+            source.processFiles(file -> {
+                indicator.checkCanceled();
+                files.add(file);
+                return true;
+            });
+        });
+        metrics.add(RunMetrics.Phase.ENUMERATION, enumerationStart);
+        // recorded before the analysis, which is the long part of a run over a large package
+        List<String> urls = ContainerUtil.map(files, VirtualFile::getUrl);
+        journalFiles(urls);
+        LOG.debug(String.format("DEBUG: %d java files to analyze", files.size()));
+
+        indicator.setText("Checking classes");
+        PsiManager psiManager = PsiManager.getInstance(project);
+        long eligibilityStart = System.nanoTime();
+        List<SmartPsiElementPointer<PsiClass>> eligible = analyze(files, indicator, file -> {
+            PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+            if (!(psiFile instanceof PsiJavaFile)) {
+                return Collections.emptyList();
+            }
+            List<ClassVerdict> result = new ArrayList<>();
+            for (PsiClass psiClass : ((PsiJavaFile) psiFile).getClasses()) {
+                if (ClassEligibilityChecker.isCandidateClass(psiClass) && source.accept(psiClass)) {
+                    ContainerUtil.addIfNotNull(result, check(psiClass));
+                }
+            }
+            return result;
+        });
+        metrics.add(RunMetrics.Phase.ELIGIBILITY, eligibilityStart);
+
+        Set<String> eligibleNames = getQualifiedNames(eligible, indicator);
+        graph.retainResolvable(eligibleNames);
+        // dependents are pending too, they may become stateless during the run
+        journalClasses(eligibleNames);
+        journalClasses(graph.getDependentNames());
+        if (journaling) {
+            journal.analyzed(urls);
+        }
+        LOG.info(String.format("%d classes can be converted, %d more may be converted after their dependencies",
+                eligible.size(), graph.size()));
+        return eligible;
+    }
+
+    @NotNull
+    private static Set<String> getQualifiedNames(@NotNull List<SmartPsiElementPointer<PsiClass>> classes,
+                                                 @NotNull ProgressIndicator indicator) {
+        return BackgroundReadActions.compute(indicator, () -> {
+            Set<String> names = new HashSet<>();
+            for (SmartPsiElementPointer<PsiClass> pointer : classes) {
+                PsiClass psiClass = pointer.getElement();
+                if (psiClass != null && psiClass.getQualifiedName() != null) {
+                    names.add(psiClass.getQualifiedName());
+                }
+            }
+            return names;
+        });
+    }
+
+    /**
+     * Checks the items concurrently, each one in its own read action, and records the verdicts.
+     *
+     * @return pointers to the classes that can be converted, in the order of items
+     */
+    @NotNull
+    private <T> List<SmartPsiElementPointer<PsiClass>> analyze(@NotNull List<T> items, @NotNull ProgressIndicator indicator,
+                                                               @NotNull Function<T, List<ClassVerdict>> analyzer) {
+        // keep the original order of items, results are stored by index
+        List<Integer> indices = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            indices.add(i);
+        }
+        @SuppressWarnings("unchecked")
+        List<ClassVerdict>[] results = new List[items.size()];
+        AtomicInteger processed = new AtomicInteger();
+        BackgroundReadActions.processConcurrently(indices, indicator, index -> {
+            BackgroundReadActions.run(indicator, () -> results[index] = analyzer.fun(items.get(index)));
+            indicator.setFraction((double) processed.incrementAndGet() / items.size());
+            return true;
+        });
+
+        List<SmartPsiElementPointer<PsiClass>> eligible = new ArrayList<>();
+        for (List<ClassVerdict> result : results) {
+            for (ClassVerdict verdict : result) {
+                ContainerUtil.addIfNotNull(eligible, record(verdict));
+            }
+        }
+        return eligible;
+    }
+
+    /**
+     * Must be called in a read action, has no side effects as the read action may be restarted.
+     *
+     * @return null if the class was removed
+     */
+    @Nullable
+    private ClassVerdict check(@NotNull PsiClass psiClass) {
+        if (!psiClass.isValid()) {
+            return null;
+        }
+        long[] implementationsNanos = {0};
+        SkipReason skipReason = ClassEligibilityChecker.findSkipReason(psiClass, nanos -> implementationsNanos[0] = nanos);
+        Set<String> dependencies = skipReason == SkipReason.STATEFUL ? InjectionGraph.findFieldDependencies(psiClass) : null;
+        SmartPsiElementPointer<PsiClass> pointer = skipReason == null || dependencies != null ? createPointer(psiClass) : null;
+        return new ClassVerdict(psiClass.getQualifiedName(), pointer, skipReason, dependencies, implementationsNanos[0]);
+    }
+
+    /**
+     * @return pointer to the class if it can be converted, otherwise null
+     */
+    @Nullable
+    private SmartPsiElementPointer<PsiClass> record(@NotNull ClassVerdict verdict) {
+        RunMetrics metrics = report.getMetrics();
+        metrics.scanned();
+        metrics.addNanos(RunMetrics.Phase.HAS_IMPLEMENTATIONS, verdict.implementationsNanos);
+        if (verdict.skipReason != null && verdict.qualifiedName != null) {
+            report.skipped(verdict.qualifiedName, verdict.skipReason);
+        }
+        if (verdict.skipReason == SkipReason.STATEFUL) {
+            LOG.info(String.format("class %s is stateful. exit", verdict.qualifiedName));
+            if (verdict.dependencies != null && verdict.pointer != null && verdict.qualifiedName != null) {
+                graph.addDependent(verdict.qualifiedName, verdict.pointer, verdict.dependencies);
+            }
+            return null;
+        }
+        if (verdict.skipReason != null) {
+            LOG.warn(String.format("%s: %s", verdict.qualifiedName, verdict.skipReason.getMessage()));
+            return null;
+        }
+        return verdict.pointer;
+    }
+
+    /**
+     * Finds instance declarations of all given classes in a single pass over the candidate files
+     * and the declarations injecting them in a single pass over the annotated members.
+     */
+    @NotNull
+    private List<ClassConversion> findReferences(@NotNull List<SmartPsiElementPointer<PsiClass>> eligible,
+                                                 @NotNull ProgressIndicator indicator) {
+        List<ClassConversion> conversions = new ArrayList<>();
+        findReferences(eligible, indicator, conversions::addAll);
+        return conversions;
+    }
+
+    /**
+     * Passes the conversions to the consumer in batches of {@link #SEARCH_BATCH_SIZE} classes, each batch as soon
+     * as the references of its classes are found. The consumer is called outside of read actions.
+     */
+    private void findReferences(@NotNull List<SmartPsiElementPointer<PsiClass>> eligible, @NotNull ProgressIndicator indicator,
+                                @NotNull Consumer<List<ClassConversion>> onBatch) {
+        if (eligible.isEmpty()) {
+            return;
+        }
+        List<SmartPsiElementPointer<PsiClass>> pointers = new ArrayList<>();
+        List<PsiClass> classes = new ArrayList<>();
+        BackgroundReadActions.run(indicator, () -> {
+            pointers.clear();
+            classes.clear();
+            for (SmartPsiElementPointer<PsiClass> pointer : eligible) {
+                PsiClass psiClass = pointer.getElement();
+                if (psiClass != null) {
+                    pointers.add(pointer);
+                    classes.add(psiClass);
+                }
+            }
+        });
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        indicator.setText("Searching injection points");
+        List<List<SmartPsiElementPointer<PsiElement>>> injectionPoints = report.getMetrics().measure(RunMetrics.Phase.INJECTION_SEARCH,
+                () -> InjectionPoints.find(project, classes, scope, indicator));
+
+        indicator.setText("Searching usages");
+        long start = System.nanoTime();
+        // time spent by the consumer, e.g. waiting for the conversion, isn't the search time
+        long[] consumerNanos = {0};
+        // references are mapped to the declarations to remove right away, only pointers to those are kept
+        new ReferenceScanner(project).scan(classes, scope, indicator, StaticClassConverter::findDeletionTarget, SEARCH_BATCH_SIZE,
+                (from, declarations) -> {
+                    List<ClassConversion> batch = new ArrayList<>();
+                    for (int i = 0; i < declarations.size(); i++) {
+                        batch.add(new ClassConversion(pointers.get(from + i), declarations.get(i), injectionPoints.get(from + i)));
+                    }
+                    long consumerStart = System.nanoTime();
+                    onBatch.accept(batch);
+                    consumerNanos[0] += System.nanoTime() - consumerStart;
+                });
+        report.getMetrics().add(RunMetrics.Phase.USAGE_SEARCH, start + consumerNanos[0]);
+    }
+
+    @NotNull
+    private ConversionPlan createPlan(@NotNull List<ClassConversion> conversions) {
+        ConversionPlan plan = new ConversionPlan();
+        for (ClassConversion conversion : conversions) {
+            PsiClass psiClass = conversion.pointer.getElement();
+            ConversionPlan.Location location = psiClass != null ? ConversionPlan.Location.create(psiClass) : null;
+            if (location == null || psiClass.getQualifiedName() == null) {
+                continue;
+            }
+            List<PsiElement> declarations = ContainerUtil.mapNotNull(conversion.declarations, SmartPsiElementPointer::getElement);
+            List<PsiElement> injectionPoints = ContainerUtil.mapNotNull(conversion.injectionPoints, SmartPsiElementPointer::getElement);
+            plan.add(psiClass.getQualifiedName(), location, StaticClassConverter.findMethodsToMakeStatic(psiClass),
+                    StatelessFields.findFieldsToMakeStatic(psiClass), declarations, injectionPoints);
+        }
+        return plan;
+    }
+
+    /**
+     * @return conversions for the classes of the plan that still match the sources
+     */
+    @NotNull
+    private List<ClassConversion> validatePlan(@NotNull ConversionPlan plan) {
+        List<ClassConversion> conversions = new ArrayList<>();
+        for (ConversionPlan.ClassItem item : plan.getClasses()) {
+            PsiClass psiClass = item.getLocation().resolve(project, PsiClass.class);
+            if (psiClass == null || !item.getQualifiedName().equals(psiClass.getQualifiedName())) {
+                LOG.warn(String.format("%s: class was changed after planning", item.getQualifiedName()));
+                failed(item.getQualifiedName(), "class was changed after planning");
+                continue;
+            }
+            String changedMembers = findChangedMembers(item, psiClass);
+            if (changedMembers != null) {
+                LOG.warn(String.format("%s: %s", item.getQualifiedName(), changedMembers));
+                failed(item.getQualifiedName(), changedMembers);
+                continue;
+            }
+            List<SmartPsiElementPointer<PsiElement>> declarations = new ArrayList<>();
+            ConversionPlan.Location changed = resolve(item.getDeclarations(), PsiElement.class, declarations);
+            List<SmartPsiElementPointer<PsiElement>> injectionPoints = new ArrayList<>();
+            if (changed == null) {
+                changed = resolve(item.getInjectionPoints(), PsiElement.class, injectionPoints);
+            }
+            if (changed != null) {
+                LOG.warn(String.format("%s: usage was changed after planning: %s", item.getQualifiedName(), changed));
+                failed(item.getQualifiedName(), "usage was changed after planning: " + changed);
+                continue;
+            }
+            conversions.add(new ClassConversion(createPointer(psiClass), declarations, injectionPoints));
+        }
+        return conversions;
+    }
+
+    /**
+     * The converter finds the members again, the plan describes what is changed only if they are the same.
+     *
+     * @return the reason to fail the class or null if the members match the plan
+     */
+    @Nullable
+    private static String findChangedMembers(@NotNull ConversionPlan.ClassItem item, @NotNull PsiClass psiClass) {
+        List<String> methods = ContainerUtil.map(StaticClassConverter.findMethodsToMakeStatic(psiClass), PsiMethod::getName);
+        if (!ContainerUtil.sorted(methods).equals(ContainerUtil.sorted(item.getMethods()))) {
+            return "methods to make static were changed after planning";
+        }
+        List<String> fields = ContainerUtil.map(StatelessFields.findFieldsToMakeStatic(psiClass), PsiField::getName);
+        if (!ContainerUtil.sorted(fields).equals(ContainerUtil.sorted(item.getStaticFields()))) {
+            return "fields to make static were changed after planning";
+        }
+        return null;
+    }
+
+    /**
+     * @return the first location that doesn't match the sources or null if all elements are resolved
+     */
+    @Nullable
+    private ConversionPlan.Location resolve(@NotNull List<ConversionPlan.Location> locations, @NotNull Class<? extends PsiElement> elementClass,
+                                            @NotNull List<SmartPsiElementPointer<PsiElement>> pointers) {
+        for (ConversionPlan.Location location : locations) {
+            PsiElement element = location.resolve(project, elementClass);
+            if (element == null) {
+                return location;
+            }
+            pointers.add(SmartPointerManager.getInstance(project).createSmartPsiElementPointer(element));
+        }
+        return null;
+    }
+
+    private SmartPsiElementPointer<PsiClass> createPointer(@NotNull PsiClass psiClass) {
+        return SmartPointerManager.getInstance(project).createSmartPsiElementPointer(psiClass);
+    }
+
+    private void startConversion(@NotNull List<ClassConversion> conversions) {
+        converter = new StaticClassConverter(project, report.getMetrics());
+        worklist.addAll(conversions);
+        searchFinished = true;
+        convertNext();
+    }
+
+    private void scheduleConvertNext() {
+        if (convertScheduled.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().invokeLater(() -> {
+                convertScheduled.set(false);
+                convertNext();
+            }, project.getDisposed());
+        }
+    }
+
+    /**
+     * Converts the queued classes on the EDT. While the search runs in background, one class is converted at a time
+     * and the next one is scheduled, so the search can go on between the conversions; otherwise the classes are
+     * converted in a loop. Dependents that become stateless and classes with changed usages are checked
+     * in background, the conversion continues when the check is finished.
+     */
+    private void convertNext() {
+        ApplicationManager.getApplication().assertIsDispatchThread();
+        // a check that runs synchronously calls back from inside the loop
+        if (converting) {
+            return;
+        }
+        converting = true;
+        try {
+            while (!finished && !waitingForCheck) {
+                List<ClassConversion> batch = worklist.isEmpty() ? searched.poll() : null;
+                if (batch != null) {
+                    worklist.addAll(batch);
+                }
+                ClassConversion conversion = worklist.poll();
+                if (conversion == null) {
+                    if (searchFinished && searched.isEmpty()) {
+                        finish();
+                    }
+                    // otherwise continues when the next batch is searched
+                    return;
+                }
+                convert(conversion);
+                if (pipelined) {
+                    scheduleConvertNext();
+                    return;
+                }
+            }
+        } finally {
+            converting = false;
+        }
+    }
+
+    private void convert(@NotNull ClassConversion conversion) {
+        PsiClass psiClass = conversion.pointer.getElement();
+        if (psiClass == null) {
+            LOG.warn(String.format("class was removed before conversion: %s", conversion.pointer));
+            return;
+        }
+        String qualifiedName = psiClass.getQualifiedName();
+        if (hasLostDeclarations(conversion) && searchedAgain.add(conversion.pointer)) {
+            LOG.info(String.format("%s: usages were changed by previous conversions, searching again", qualifiedName));
+            checkInBackground("Searching usages again", indicator -> findReferences(Collections.singletonList(conversion.pointer), indicator));
+            return;
+        }
+        try {
+            converter.convert(psiClass, conversion.declarations, conversion.injectionPoints);
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // the commands done so far are kept, the class is left for review and the run goes on
+            LOG.warn(String.format("%s: conversion failed", qualifiedName), e);
+            if (qualifiedName != null) {
+                failed(qualifiedName, "conversion failed: " + e.getMessage());
+            }
+            return;
+        }
+        onConverted(qualifiedName);
+    }
+
+    private void journalFiles(@NotNull Collection<String> urls) {
+        if (journaling) {
+            journaledFiles.addAll(urls);
+            journal.pendingFiles(urls);
+        }
+    }
+
+    private void journalClasses(@NotNull Collection<String> qualifiedNames) {
+        if (journaling) {
+            journaledClasses.addAll(qualifiedNames);
+            journal.pending(qualifiedNames);
+        }
+    }
+
+    private void failed(@NotNull String qualifiedName, @NotNull String reason) {
+        report.failed(qualifiedName, reason);
+        journal.failed(qualifiedName, reason);
+    }
+
+    /**
+     * @return true if some declarations can't be found anymore, i.e. their files were modified after the search
+     */
+    private boolean hasLostDeclarations(@NotNull ClassConversion conversion) {
+        for (SmartPsiElementPointer<PsiElement> declaration : ContainerUtil.concat(conversion.declarations, conversion.injectionPoints)) {
+            VirtualFile file = declaration.getElement() == null ? declaration.getVirtualFile() : null;
+            if (file != null && file.isValid()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void cancel() {
+        report.cancelled();
+        finish();
+    }
+
+    /**
+     * Ends the run after an unexpected error in a background task, the report is still published.
+     */
+    private void stop(@NotNull Throwable error) {
+        LOG.warn("run failed, remaining classes are skipped", error);
+        report.error(String.valueOf(error));
+        cancel();
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (!report.isCancelled()) {
+            journal.finished(journaledFiles, journaledClasses);
+        }
+        if (converter != null) {
+            Set<String> finishedClasses = new HashSet<>(report.getConverted());
+            if (resumed) {
+                finishedClasses.addAll(addClassesOfInterruptedRun());
+            }
+            converter.finishConvertedClasses();
+            journal.classesFinished(finishedClasses);
+        }
+        LOG.info(String.format("%d classes converted, %d skipped, %d failed",
+                report.getConverted().size(), report.getSkippedCount(), report.getFailedCount()));
+        EjectDIReports.getInstance(project).publish(report);
+        if (onFinished != null) {
+            onFinished.accept(report);
+        }
+    }
+
+    /**
+     * Classes converted before the run was interrupted may not be finished yet.
+     *
+     * @return names of the classes converted before, including the ones that can't be found anymore
+     */
+    @NotNull
+    private Set<String> addClassesOfInterruptedRun() {
+        Set<String> converted = new HashSet<>(report.getConverted());
+        JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        Set<String> completed = journal.getCompleted();
+        for (String qualifiedName : completed) {
+            PsiClass psiClass = converted.contains(qualifiedName) ? null : facade.findClass(qualifiedName, scope);
+            if (psiClass != null) {
+                converter.addConvertedClass(psiClass);
+            }
+        }
+        return completed;
+    }
+
+    private void onConverted(@Nullable String qualifiedName) {
+        if (qualifiedName == null) {
+            return;
+        }
+        report.converted(qualifiedName);
+        journal.completed(qualifiedName);
+        List<SmartPsiElementPointer<PsiClass>> ready = graph.markConverted(qualifiedName);
+        if (ready.isEmpty()) {
+            return;
+        }
+        // the fields of converted classes are removed from the dependents, check them again in background
+        checkInBackground("Checking dependent classes", indicator -> {
+            long start = System.nanoTime();
+            List<SmartPsiElementPointer<PsiClass>> eligible = analyze(ready, indicator, pointer -> {
+                PsiClass psiClass = pointer.getElement();
+                return psiClass != null ? ContainerUtil.createMaybeSingletonList(check(psiClass)) : Collections.emptyList();
+            });
+            report.getMetrics().add(RunMetrics.Phase.ELIGIBILITY, start);
+            LOG.info(String.format("%d of %d dependent classes became stateless", eligible.size(), ready.size()));
+            return findReferences(eligible, indicator);
+        });
+    }
+
+    /**
+     * Pauses the conversion until the check is done, the found conversions are done next.
+     */
+    private void checkInBackground(@NotNull String title, @NotNull Function<ProgressIndicator, List<ClassConversion>> check) {
+        waitingForCheck = true;
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, title, true) {
+
+            private List<ClassConversion> conversions = new ArrayList<>();
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                conversions = check.fun(indicator);
+            }
+
+            @Override
+            public void onSuccess() {
+                waitingForCheck = false;
+                // newly convertible dependents go first, so the dependency graph is processed in topological order
+                for (int i = conversions.size() - 1; i >= 0; i--) {
+                    worklist.addFirst(conversions.get(i));
+                }
+                convertNext();
+            }
+
+            @Override
+            public void onCancel() {
+                LOG.info("conversion is cancelled, remaining classes are skipped");
+                waitingForCheck = false;
+                cancel();
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                waitingForCheck = false;
+                stop(error);
+            }
+        });
+    }
+}
@@ -0,0 +1,199 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationStarterEx;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiPackage;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PackageScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Headless entry point, runs the refactoring over a whole project from the command line:
+ * <pre>
+ * idea ejectdi &lt;project path&gt; &lt;report.json&gt; [--plan=&lt;plan.json&gt; | --apply=&lt;plan.json&gt; | --resume] [--module=&lt;name&gt; | &lt;package&gt;]...
+ * </pre>
+ * Without modules and packages the whole project is processed. Changes are saved and a JSON report
+ * of converted, skipped and failed classes is written before the application exits.
+ * With {@code --plan} nothing is changed, a {@link ConversionPlan} is written instead;
+ * with {@code --apply} the classes of a saved plan are converted without analyzing the project;
+ * with {@code --resume} only the classes left by an interrupted run are converted, see {@link ConversionJournal}.
+ */
+public class EjectDIStarter extends ApplicationStarterEx {
+
+    private static final Logger LOG = Logger.getInstance(EjectDIStarter.class);
+    private static final String MODULE_PREFIX = "--module=";
+    private static final String PLAN_PREFIX = "--plan=";
+    private static final String APPLY_PREFIX = "--apply=";
+    private static final String RESUME_OPTION = "--resume";
+
+    @Override
+    public String getCommandName() {
+        return "ejectdi";
+    }
+
+    @Override
+    public boolean isHeadless() {
+        return true;
+    }
+
+    @Override
+    public void premain(String[] args) {
+        if (args.length < 3) {
+            System.err.println("usage: ejectdi <project path> <report.json> [--plan=<plan.json> | --apply=<plan.json> | --resume] " +
+                    "[--module=<name> | <package>]...");
+            System.exit(1);
+        }
+    }
+
+    @Override
+    public void main(String[] args) {
+        String projectPath = args[1];
+        File reportFile = new File(args[2]);
+        List<String> targets = new ArrayList<>(Arrays.asList(args).subList(3, args.length));
+        File planFile = removeOption(targets, PLAN_PREFIX);
+        File applyFile = removeOption(targets, APPLY_PREFIX);
+        boolean resume = targets.remove(RESUME_OPTION);
+
+        Project project = ProjectUtil.openOrImport(projectPath, null, false);
+        if (project == null) {
+            System.err.println("failed to open project: " + projectPath);
+            exit(1);
+            return;
+        }
+        // the analysis relies on indexes
+        DumbService.getInstance(project).runWhenSmart(() -> {
+            if (resume) {
+                if (!ConversionJournal.getInstance(project).canResume()) {
+                    System.out.println("nothing to resume");
+                    exit(0);
+                    return;
+                }
+                new EjectDIRunner(project).resume(report -> finish(project, report, reportFile));
+                return;
+            }
+            if (applyFile != null) {
+                ConversionPlan plan;
+                try {
+                    plan = ConversionPlan.fromJson(new String(Files.readAllBytes(applyFile.toPath()), StandardCharsets.UTF_8));
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("failed to read plan: " + applyFile, e);
+                    exit(1);
+                    return;
+                }
+                new EjectDIRunner(project).apply(plan, report -> finish(project, report, reportFile));
+                return;
+            }
+            GlobalSearchScope scope = createScope(project, targets);
+            if (scope == null) {
+                exit(1);
+                return;
+            }
+            if (planFile != null) {
+                EjectDIRunner runner = new EjectDIRunner(project);
+                runner.plan(ClassSources.forScope(scope), plan -> {
+                    if (!write(planFile, plan.toJson()) || !write(reportFile, runner.getReport().toJson())) {
+                        exit(1);
+                        return;
+                    }
+                    System.out.println(String.format("%d classes planned, plan is written to %s",
+                            plan.getClasses().size(), planFile.getAbsolutePath()));
+                    exit(0);
+                }, () -> {
+                    write(reportFile, runner.getReport().toJson());
+                    System.err.println("analysis is stopped, no plan was written");
+                    exit(1);
+                });
+                return;
+            }
+            new EjectDIRunner(project).run(ClassSources.forScope(scope), report -> finish(project, report, reportFile));
+        });
+    }
+
+    private static void finish(Project project, ConversionReport report, File reportFile) {
+        FileDocumentManager.getInstance().saveAllDocuments();
+        project.save();
+        if (!write(reportFile, report.toJson())) {
+            exit(1);
+            return;
+        }
+        System.out.println(String.format("%d classes converted, report is written to %s",
+                report.getConverted().size(), reportFile.getAbsolutePath()));
+        if (report.getError() != null) {
+            System.err.println("run failed: " + report.getError());
+        }
+        exit(report.isCancelled() || report.getError() != null ? 1 : 0);
+    }
+
+    private static boolean write(File file, String content) {
+        try {
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            LOG.warn("failed to write file: " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Removes the option from the arguments.
+     *
+     * @return the file given by the option or null if there is no such option
+     */
+    private static File removeOption(List<String> args, String prefix) {
+        for (Iterator<String> iterator = args.iterator(); iterator.hasNext(); ) {
+            String arg = iterator.next();
+            if (arg.startsWith(prefix)) {
+                iterator.remove();
+                return new File(arg.substring(prefix.length()));
+            }
+        }
+        return null;
+    }
+
+    private static GlobalSearchScope createScope(Project project, List<String> targets) {
+        if (targets.isEmpty()) {
+            return GlobalSearchScope.projectScope(project);
+        }
+        List<GlobalSearchScope> scopes = new ArrayList<>();
+        for (String target : targets) {
+            if (target.startsWith(MODULE_PREFIX)) {
+                String moduleName = target.substring(MODULE_PREFIX.length());
+                Module module = ModuleManager.getInstance(project).findModuleByName(moduleName);
+                if (module == null) {
+                    System.err.println("module not found: " + moduleName);
+                    return null;
+                }
+                scopes.add(module.getModuleScope(false));
+            } else {
+                PsiPackage psiPackage = JavaPsiFacade.getInstance(project).findPackage(target);
+                if (psiPackage == null) {
+                    System.err.println("package not found: " + target);
+                    return null;
+                }
+                scopes.add(PackageScope.packageScope(psiPackage, true).intersectWith(GlobalSearchScope.projectScope(project)));
+            }
+        }
+        return GlobalSearchScope.union(scopes.toArray(new GlobalSearchScope[scopes.size()]));
+    }
+
+    private static void exit(int code) {
+        ApplicationManagerEx.getApplicationEx().exit(true, true);
+        System.exit(code);
+    }
+}
@@ -0,0 +1,81 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.JTextArea;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Shows timings, counters and skip reasons of the last run and exports them to JSON.
+ */
+public class EjectDIToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+    private static final Logger LOG = Logger.getInstance(EjectDIToolWindowFactory.class);
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        JTextArea text = new JTextArea();
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, UIUtil.getLabelFont().getSize()));
+        showReport(text, EjectDIReports.getInstance(project).getLastReport());
+
+        JButton export = new JButton("Export JSON...");
+        export.addActionListener(e -> exportReport(project));
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(export);
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(buttons, BorderLayout.NORTH);
+        panel.add(new JBScrollPane(text), BorderLayout.CENTER);
+
+        Content content = ContentFactory.SERVICE.getInstance().createContent(panel, "Last run", false);
+        project.getMessageBus().connect(content).subscribe(EjectDIReports.TOPIC,
+                report -> UIUtil.invokeLaterIfNeeded(() -> showReport(text, report)));
+        toolWindow.getContentManager().addContent(content);
+    }
+
+    private static void showReport(JTextArea text, ConversionReport report) {
+        text.setText(report != null ? report.format() : "No runs yet");
+        text.setCaretPosition(0);
+    }
+
+    private static void exportReport(Project project) {
+        ConversionReport report = EjectDIReports.getInstance(project).getLastReport();
+        if (report == null) {
+            Messages.showInfoMessage(project, "No runs yet", "Eject DI");
+            return;
+        }
+        VirtualFileWrapper wrapper = FileChooserFactory.getInstance()
+                .createSaveFileDialog(new FileSaverDescriptor("Export Report", "Export the report of the last run", "json"), project)
+                .save(null, "ejectdi-report.json");
+        if (wrapper == null) {
+            return;
+        }
+        try {
+            Files.write(wrapper.getFile().toPath(), report.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.warn("failed to export report", e);
+            Messages.showErrorDialog(project, "Failed to export report: " + e.getMessage(), "Eject DI");
+        }
+    }
+}
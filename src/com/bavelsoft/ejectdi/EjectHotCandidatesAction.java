@@ -0,0 +1,71 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads a CPU or allocation profile in collapsed stack format, ranks the convertible classes found on its stacks
+ * by {@link ProfileWeights} and converts the top ones chosen by the user.
+ */
+public class EjectHotCandidatesAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(EjectHotCandidatesAction.class);
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            LOG.error("project is null");
+            return;
+        }
+        VirtualFile file = FileChooser.chooseFile(
+                FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor().withTitle("Choose Profile in Collapsed Stack Format"),
+                project, null);
+        if (file == null) {
+            return;
+        }
+        ProfileWeights weights;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            weights = ProfileWeights.parseCollapsed(reader);
+        } catch (IOException ex) {
+            LOG.warn("failed to read profile: " + file, ex);
+            Messages.showErrorDialog(project, "Failed to read profile: " + ex.getMessage(), "Eject DI");
+            return;
+        }
+        // only the classes seen in the profile are analyzed
+        new EjectDIRunner(project).plan(ClassSources.forClassNames(project, weights.getClassNames()), plan -> {
+            List<String> classes = new ArrayList<>();
+            for (ConversionPlan.ClassItem item : plan.getClasses()) {
+                classes.add(item.getQualifiedName());
+            }
+            if (classes.isEmpty()) {
+                Messages.showInfoMessage(project, "No convertible classes found in the profile", "Eject DI");
+                return;
+            }
+            classes.sort(Comparator.<String>comparingLong(weights::getWeight).reversed().thenComparing(Comparator.naturalOrder()));
+            HotClassesDialog dialog = new HotClassesDialog(project, classes, weights);
+            if (dialog.showAndGet()) {
+                new EjectDIRunner(project).apply(plan.retain(dialog.getSelectedClasses()), null);
+            }
+        });
+    }
+}
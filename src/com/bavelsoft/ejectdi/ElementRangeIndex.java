@@ -0,0 +1,155 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.lang.injection.InjectedLanguageManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiDirectoryContainer;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiLanguageInjectionHost;
+import com.intellij.psi.PsiNameIdentifierOwner;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers whether a place is inside any of the elements to delete, like
+ * {@link CustomSafeDeleteProcessor#isInside(PsiElement, PsiElement)} called for each element. The text ranges
+ * of the elements, bucketed by file, rule out most places with a binary search; a place within a range is
+ * confirmed by walking up its parents to one of the elements, as a range also covers e.g. a parent of the same size.
+ */
+class ElementRangeIndex {
+
+    private final Map<PsiFile, Intervals> intervals = new HashMap<>();
+    private final Set<PsiFile> wholeFiles = new HashSet<>();
+    // the elements and the name identifier parents outside their owners, whose subtrees are inside
+    private final Set<PsiElement> ancestors = new HashSet<>();
+    // directories and packages can't be represented as ranges, they are checked one by one
+    private final List<PsiElement> containers = new ArrayList<>();
+
+    ElementRangeIndex(@NotNull PsiElement[] elements) {
+        Map<PsiFile, List<TextRange>> ranges = new HashMap<>();
+        for (PsiElement element : elements) {
+            if (element instanceof PsiDirectoryContainer) {
+                containers.add(element);
+            } else if (element instanceof PsiFile) {
+                wholeFiles.addAll(((PsiFile) element).getViewProvider().getAllFiles());
+            } else {
+                addRange(ranges, element);
+                if (element instanceof PsiNameIdentifierOwner) {
+                    PsiElement nameIdentifier = ((PsiNameIdentifierOwner) element).getNameIdentifier();
+                    if (nameIdentifier != null && !PsiTreeUtil.isAncestor(element, nameIdentifier, true)) {
+                        addRange(ranges, nameIdentifier.getParent());
+                    }
+                }
+            }
+        }
+        for (Map.Entry<PsiFile, List<TextRange>> entry : ranges.entrySet()) {
+            intervals.put(entry.getKey(), new Intervals(entry.getValue()));
+        }
+    }
+
+    private void addRange(Map<PsiFile, List<TextRange>> ranges, PsiElement element) {
+        PsiFile file = element != null ? element.getContainingFile() : null;
+        TextRange range = element != null ? element.getTextRange() : null;
+        if (file != null && range != null) {
+            ranges.computeIfAbsent(file, key -> new ArrayList<>()).add(range);
+            ancestors.add(element);
+        }
+    }
+
+    boolean contains(@NotNull PsiElement place) {
+        if (containsDirectly(place)) {
+            return true;
+        }
+        InjectedLanguageManager injectedLanguageManager = InjectedLanguageManager.getInstance(place.getProject());
+        PsiLanguageInjectionHost host = injectedLanguageManager.getInjectionHost(place);
+        while (host != null) {
+            if (containsDirectly(host)) {
+                return true;
+            }
+            host = injectedLanguageManager.getInjectionHost(host);
+        }
+        for (PsiElement container : containers) {
+            if (CustomSafeDeleteProcessor.isInside(place, container)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean containsDirectly(@NotNull PsiElement place) {
+        PsiFile file = place.getContainingFile();
+        if (file == null) {
+            return false;
+        }
+        if (wholeFiles.contains(file)) {
+            return true;
+        }
+        Intervals fileIntervals = intervals.get(file);
+        TextRange range = place.getTextRange();
+        if (fileIntervals == null || range == null || !fileIntervals.contains(range)) {
+            return false;
+        }
+        for (PsiElement element = place; element != null && !(element instanceof PsiFile); element = element.getParent()) {
+            if (ancestors.contains(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sorted intervals, nested and overlapping ranges are merged. Adjacent ranges are kept apart, a range
+     * spanning both of them isn't inside either.
+     */
+    static class Intervals {
+        private final int[] starts;
+        private final int[] ends;
+
+        Intervals(List<TextRange> ranges) {
+            List<TextRange> sorted = new ArrayList<>(ranges);
+            // outer ranges first, so a range with the same start is merged into them
+            Collections.sort(sorted, Comparator.comparingInt(TextRange::getStartOffset).thenComparingInt(range -> -range.getEndOffset()));
+            List<TextRange> merged = new ArrayList<>();
+            for (TextRange range : sorted) {
+                TextRange last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && range.getStartOffset() < last.getEndOffset()) {
+                    merged.set(merged.size() - 1, new TextRange(last.getStartOffset(), Math.max(last.getEndOffset(), range.getEndOffset())));
+                } else {
+                    merged.add(range);
+                }
+            }
+            starts = new int[merged.size()];
+            ends = new int[merged.size()];
+            for (int i = 0; i < merged.size(); i++) {
+                starts[i] = merged.get(i).getStartOffset();
+                ends[i] = merged.get(i).getEndOffset();
+            }
+        }
+
+        boolean contains(TextRange range) {
+            // the last interval that starts at or before the range
+            int low = 0;
+            int high = starts.length - 1;
+            int found = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= range.getStartOffset()) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return found >= 0 && range.getEndOffset() <= ends[found];
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows convertible classes ranked by their weight in a profile and asks how many of the top ones to convert.
+ */
+class HotClassesDialog extends DialogWrapper {
+
+    private static final int DEFAULT_TOP_COUNT = 10;
+
+    private final List<String> classes;
+    private final ProfileWeights weights;
+    private final JSpinner topCount;
+
+    /**
+     * @param classes qualified names of convertible classes sorted by weight
+     */
+    HotClassesDialog(@NotNull Project project, @NotNull List<String> classes, @NotNull ProfileWeights weights) {
+        super(project);
+        this.classes = classes;
+        this.weights = weights;
+        this.topCount = new JSpinner(new SpinnerNumberModel(Math.min(DEFAULT_TOP_COUNT, classes.size()), 1, classes.size(), 1));
+        setTitle("Convert Hot Classes");
+        init();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        List<String> rows = new ArrayList<>();
+        for (String qualifiedName : classes) {
+            long weight = weights.getWeight(qualifiedName);
+            double percent = weights.getTotalSamples() > 0 ? 100.0 * weight / weights.getTotalSamples() : 0;
+            rows.add(String.format("%6.2f%%  %8d  %s", percent, weight, qualifiedName));
+        }
+        JBList<String> list = new JBList<>(rows);
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        top.add(new JLabel("Convert top"));
+        top.add(topCount);
+        top.add(new JLabel(String.format("of %d convertible classes found in the profile", classes.size())));
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(top, BorderLayout.NORTH);
+        panel.add(new JBScrollPane(list), BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * @return qualified names of the classes chosen to convert, heaviest first
+     */
+    @NotNull
+    List<String> getSelectedClasses() {
+        return classes.subList(0, (Integer) topCount.getValue());
+    }
+}
@@ -0,0 +1,128 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.SmartPsiElementPointer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency graph of stateful classes on the classes they hold in instance fields (usually injected).
+ * When all dependencies of a class are converted, their fields are removed from the class, so it may become
+ * stateless too and has to be checked again. Only those classes are re-checked, the rest of the scope isn't touched.
+ */
+class InjectionGraph {
+
+    // dependent class -> dependencies which aren't converted yet
+    private final Map<String, Set<String>> remainingDependencies = new HashMap<>();
+    // dependency -> classes that hold it in their fields
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private final Map<String, SmartPsiElementPointer<PsiClass>> pointers = new HashMap<>();
+
+    /**
+     * @return qualified names of the classes of all instance fields or null if some field
+     * isn't of a class type and therefore can never be removed by the conversion
+     */
+    @Nullable
+    static Set<String> findFieldDependencies(@NotNull PsiClass psiClass) {
+        Set<String> dependencies = new HashSet<>();
+        for (PsiField field : psiClass.getFields()) {
+            if (StatelessFields.isStateless(field)) {
+                continue;
+            }
+            PsiType type = field.getType();
+            PsiClass fieldClass = type instanceof PsiClassType ? ((PsiClassType) type).resolve() : null;
+            String qualifiedName = fieldClass != null ? fieldClass.getQualifiedName() : null;
+            if (qualifiedName == null) {
+                return null;
+            }
+            dependencies.add(qualifiedName);
+        }
+        return dependencies;
+    }
+
+    synchronized void addDependent(@NotNull String qualifiedName, @NotNull SmartPsiElementPointer<PsiClass> pointer,
+                                   @NotNull Set<String> dependencies) {
+        pointers.put(qualifiedName, pointer);
+        remainingDependencies.put(qualifiedName, new HashSet<>(dependencies));
+        for (String dependency : dependencies) {
+            dependents.computeIfAbsent(dependency, key -> new HashSet<>()).add(qualifiedName);
+        }
+    }
+
+    /**
+     * Drops dependents that hold a class which can't become convertible, i.e. a class which is neither eligible
+     * nor a dependent itself. Repeats until no more dependents are dropped.
+     */
+    synchronized void retainResolvable(@NotNull Collection<String> eligible) {
+        boolean changed = true;
+        while (changed) {
+            Set<String> convertible = new HashSet<>(eligible);
+            convertible.addAll(remainingDependencies.keySet());
+            Set<String> removed = new HashSet<>();
+            for (Map.Entry<String, Set<String>> entry : remainingDependencies.entrySet()) {
+                if (!convertible.containsAll(entry.getValue())) {
+                    removed.add(entry.getKey());
+                }
+            }
+            for (String qualifiedName : removed) {
+                remove(qualifiedName);
+            }
+            changed = !removed.isEmpty();
+        }
+    }
+
+    synchronized int size() {
+        return remainingDependencies.size();
+    }
+
+    /**
+     * @return dependents that still wait for their dependencies
+     */
+    @NotNull
+    synchronized Set<String> getDependentNames() {
+        return new HashSet<>(remainingDependencies.keySet());
+    }
+
+    /**
+     * Marks the class as converted.
+     *
+     * @return dependents that have no unconverted dependencies left and have to be checked again
+     */
+    @NotNull
+    synchronized List<SmartPsiElementPointer<PsiClass>> markConverted(@NotNull String qualifiedName) {
+        Set<String> classDependents = dependents.remove(qualifiedName);
+        if (classDependents == null) {
+            return Collections.emptyList();
+        }
+        List<SmartPsiElementPointer<PsiClass>> ready = new ArrayList<>();
+        for (String dependent : classDependents) {
+            Set<String> remaining = remainingDependencies.get(dependent);
+            if (remaining == null) {
+                continue;
+            }
+            remaining.remove(qualifiedName);
+            if (remaining.isEmpty()) {
+                ready.add(pointers.get(dependent));
+                remove(dependent);
+            }
+        }
+        return ready;
+    }
+
+    private void remove(String qualifiedName) {
+        remainingDependencies.remove(qualifiedName);
+        pointers.remove(qualifiedName);
+    }
+}
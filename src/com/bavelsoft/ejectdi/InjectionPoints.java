@@ -0,0 +1,311 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.JavaRecursiveElementWalkingVisitor;
+import com.intellij.psi.PsiAssignmentExpression;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionStatement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiStatement;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.psi.search.searches.AnnotatedElementsSearch;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the declarations that inject converted classes: injected fields, parameters of injected constructors,
+ * setters and provider methods together with their assignments to fields, and provider methods of the converted
+ * classes. Only members found in the annotation index are visited, instead of all usages of the classes.
+ */
+final class InjectionPoints {
+
+    private static final List<String> INJECT_ANNOTATIONS = Arrays.asList(
+            "javax.inject.Inject",
+            "com.google.inject.Inject",
+            "org.springframework.beans.factory.annotation.Autowired");
+    private static final List<String> PROVIDER_ANNOTATIONS = Arrays.asList(
+            "dagger.Provides",
+            "com.google.inject.Provides",
+            "org.springframework.context.annotation.Bean");
+
+    private InjectionPoints() {
+    }
+
+    /**
+     * Files that may contain the annotated members are taken from the word index, then every file is searched
+     * in its own read action, so a write action only restarts the search of one file.
+     *
+     * @return pointers to the declarations to remove for every class, in the order of classes
+     */
+    @NotNull
+    static List<List<SmartPsiElementPointer<PsiElement>>> find(@NotNull Project project, @NotNull List<PsiClass> classes,
+                                                              @NotNull GlobalSearchScope scope, @NotNull ProgressIndicator indicator) {
+        List<List<SmartPsiElementPointer<PsiElement>>> result = new ArrayList<>();
+        for (int i = 0; i < classes.size(); i++) {
+            result.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        if (classes.isEmpty()) {
+            return result;
+        }
+        Map<String, Integer> indices = new HashMap<>();
+        List<PsiClass> injectAnnotations = new ArrayList<>();
+        List<PsiClass> providerAnnotations = new ArrayList<>();
+        Set<VirtualFile> files = new LinkedHashSet<>();
+        BackgroundReadActions.run(indicator, () -> {
+            indices.clear();
+            injectAnnotations.clear();
+            providerAnnotations.clear();
+            files.clear();
+            for (int i = 0; i < classes.size(); i++) {
+                PsiClass psiClass = classes.get(i);
+                if (psiClass.isValid() && psiClass.getQualifiedName() != null) {
+                    indices.put(psiClass.getQualifiedName(), i);
+                }
+            }
+            findAnnotationClasses(project, INJECT_ANNOTATIONS, injectAnnotations);
+            findAnnotationClasses(project, PROVIDER_ANNOTATIONS, providerAnnotations);
+            PsiSearchHelper searchHelper = PsiSearchHelper.SERVICE.getInstance(project);
+            for (PsiClass annotationClass : ContainerUtil.concat(injectAnnotations, providerAnnotations)) {
+                searchHelper.processAllFilesWithWord(annotationClass.getName(), scope, psiFile -> {
+                    indicator.checkCanceled();
+                    if (psiFile instanceof PsiJavaFile && psiFile.getVirtualFile() != null) {
+                        files.add(psiFile.getVirtualFile());
+                    }
+                    return true;
+                }, true);
+            }
+        });
+        if (files.isEmpty()) {
+            return result;
+        }
+
+        PsiManager psiManager = PsiManager.getInstance(project);
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+        BackgroundReadActions.processConcurrently(new ArrayList<>(files), indicator, file -> {
+            BackgroundReadActions.run(indicator, () -> {
+                PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+                if (psiFile == null) {
+                    return;
+                }
+                // elements of a file are collected first, so a restarted read action doesn't report them twice
+                Map<Integer, Set<PsiElement>> found = new HashMap<>();
+                GlobalSearchScope fileScope = GlobalSearchScope.fileScope(psiFile);
+                for (PsiClass annotationClass : injectAnnotations) {
+                    if (annotationClass.isValid()) {
+                        AnnotatedElementsSearch.searchPsiMembers(annotationClass, fileScope).forEach(member -> {
+                            indicator.checkCanceled();
+                            collectInjected(member, indices, found);
+                            return true;
+                        });
+                    }
+                }
+                for (PsiClass annotationClass : providerAnnotations) {
+                    if (annotationClass.isValid()) {
+                        AnnotatedElementsSearch.searchPsiMethods(annotationClass, fileScope).forEach(method -> {
+                            indicator.checkCanceled();
+                            collectProvider(method, indices, found);
+                            return true;
+                        });
+                    }
+                }
+                for (Map.Entry<Integer, Set<PsiElement>> entry : found.entrySet()) {
+                    for (PsiElement element : entry.getValue()) {
+                        result.get(entry.getKey()).add(pointerManager.createSmartPsiElementPointer(element));
+                    }
+                }
+            });
+            return true;
+        });
+        return result;
+    }
+
+    private static void findAnnotationClasses(Project project, List<String> qualifiedNames, List<PsiClass> annotationClasses) {
+        JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+        GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+        for (String qualifiedName : qualifiedNames) {
+            ContainerUtil.addIfNotNull(annotationClasses, facade.findClass(qualifiedName, allScope));
+        }
+    }
+
+    private static Set<PsiElement> elementsOf(Map<Integer, Set<PsiElement>> found, int index) {
+        return found.computeIfAbsent(index, key -> new LinkedHashSet<>());
+    }
+
+    private static void collectInjected(PsiMember member, Map<String, Integer> indices, Map<Integer, Set<PsiElement>> found) {
+        if (member instanceof PsiField) {
+            Integer index = indexOf(((PsiField) member).getType(), indices);
+            if (index != null) {
+                elementsOf(found, index).add(member);
+            }
+        } else if (member instanceof PsiMethod) {
+            PsiMethod method = (PsiMethod) member;
+            if (!method.isConstructor() && injectsOnly(method, indices)) {
+                // a setter of converted classes, all of its parameters go away
+                for (PsiParameter parameter : method.getParameterList().getParameters()) {
+                    Set<PsiElement> elements = elementsOf(found, indexOf(parameter.getType(), indices));
+                    elements.add(method);
+                    elements.addAll(findAssignedFields(method, parameter));
+                }
+                return;
+            }
+            collectParameters(method, indices, found);
+        }
+    }
+
+    private static void collectProvider(PsiMethod method, Map<String, Integer> indices, Map<Integer, Set<PsiElement>> found) {
+        Integer index = indexOf(method.getReturnType(), indices);
+        if (index != null) {
+            // the converted class isn't injected anymore, so its binding isn't needed
+            elementsOf(found, index).add(method);
+            return;
+        }
+        collectParameters(method, indices, found);
+    }
+
+    private static void collectParameters(PsiMethod method, Map<String, Integer> indices, Map<Integer, Set<PsiElement>> found) {
+        for (PsiParameter parameter : method.getParameterList().getParameters()) {
+            Integer index = indexOf(parameter.getType(), indices);
+            if (index != null) {
+                Set<PsiElement> elements = elementsOf(found, index);
+                elements.add(parameter);
+                elements.addAll(findAssignments(method, parameter));
+                elements.addAll(findAssignedFields(method, parameter));
+            }
+        }
+    }
+
+    private static boolean injectsOnly(PsiMethod method, Map<String, Integer> indices) {
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        if (parameters.length == 0) {
+            return false;
+        }
+        for (PsiParameter parameter : parameters) {
+            if (indexOf(parameter.getType(), indices) == null) {
+                return false;
+            }
+        }
+        PsiCodeBlock body = method.getBody();
+        if (body == null) {
+            return false;
+        }
+        // the body has to consist of field assignments only, otherwise the setter does something else
+        for (PsiStatement statement : body.getStatements()) {
+            if (!isParameterAssignment(statement, Arrays.asList(parameters), method.getContainingClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return statements like {@code this.field = parameter;} in the method body
+     */
+    private static List<PsiStatement> findAssignments(PsiMethod method, PsiParameter parameter) {
+        List<PsiStatement> statements = new ArrayList<>();
+        PsiCodeBlock body = method.getBody();
+        if (body != null) {
+            for (PsiStatement statement : body.getStatements()) {
+                if (isParameterAssignment(statement, Collections.singletonList(parameter), method.getContainingClass())) {
+                    statements.add(statement);
+                }
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * @return fields of the method's class which get the parameter assigned anywhere in the method
+     */
+    private static List<PsiField> findAssignedFields(PsiMethod method, PsiParameter parameter) {
+        List<PsiField> fields = new ArrayList<>();
+        if (method.getBody() == null) {
+            return fields;
+        }
+        method.getBody().accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitAssignmentExpression(PsiAssignmentExpression expression) {
+                super.visitAssignmentExpression(expression);
+                PsiField field = getAssignedField(expression, method.getContainingClass());
+                if (field != null && isReferenceTo(expression.getRExpression(), parameter)) {
+                    fields.add(field);
+                }
+            }
+        });
+        return fields;
+    }
+
+    private static boolean isParameterAssignment(PsiStatement statement, List<PsiParameter> parameters, @Nullable PsiClass psiClass) {
+        if (!(statement instanceof PsiExpressionStatement)) {
+            return false;
+        }
+        PsiExpression expression = ((PsiExpressionStatement) statement).getExpression();
+        if (!(expression instanceof PsiAssignmentExpression)) {
+            return false;
+        }
+        PsiAssignmentExpression assignment = (PsiAssignmentExpression) expression;
+        if (getAssignedField(assignment, psiClass) == null) {
+            return false;
+        }
+        for (PsiParameter parameter : parameters) {
+            if (isReferenceTo(assignment.getRExpression(), parameter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static PsiField getAssignedField(PsiAssignmentExpression assignment, @Nullable PsiClass psiClass) {
+        PsiExpression lExpression = PsiUtil.skipParenthesizedExprDown(assignment.getLExpression());
+        if (!(lExpression instanceof PsiReferenceExpression)) {
+            return null;
+        }
+        PsiElement target = ((PsiReferenceExpression) lExpression).resolve();
+        if (!(target instanceof PsiField) || psiClass == null) {
+            return null;
+        }
+        PsiField field = (PsiField) target;
+        return psiClass.equals(field.getContainingClass()) ? field : null;
+    }
+
+    private static boolean isReferenceTo(@Nullable PsiExpression expression, PsiParameter parameter) {
+        PsiExpression unwrapped = PsiUtil.skipParenthesizedExprDown(expression);
+        return unwrapped instanceof PsiReferenceExpression && parameter.equals(((PsiReferenceExpression) unwrapped).resolve());
+    }
+
+    @Nullable
+    private static Integer indexOf(@Nullable PsiType type, Map<String, Integer> indices) {
+        PsiClass psiClass = type instanceof PsiClassType ? ((PsiClassType) type).resolve() : null;
+        String qualifiedName = psiClass != null ? psiClass.getQualifiedName() : null;
+        return qualifiedName != null ? indices.get(qualifiedName) : null;
+    }
+}
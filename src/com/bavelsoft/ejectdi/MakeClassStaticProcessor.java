@@ -0,0 +1,178 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Ref;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiVariable;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.refactoring.BaseRefactoringProcessor;
+import com.intellij.refactoring.makeStatic.Settings;
+import com.intellij.refactoring.ui.UsageViewDescriptorAdapter;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.usageView.UsageViewDescriptor;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Makes all given methods of a class static in a single refactoring run: external references of all methods
+ * are found in one {@link ReferenceScanner} pass over the candidate files and all rewrites are applied
+ * in one command (and one undo unit) instead of running a processor per method.
+ * Calls qualified with a variable are rewritten to {@code Class.method()} with {@link BulkDocumentEditor}.
+ */
+public class MakeClassStaticProcessor extends BaseRefactoringProcessor {
+
+    private final PsiClass myClass;
+    private final PsiMethod[] myMethods;
+    private final List<CustomMakeMethodStaticProcessor> myProcessors = new ArrayList<>();
+    private final Map<CustomMakeMethodStaticProcessor, UsageInfo[]> myUsages = new LinkedHashMap<>();
+
+    public MakeClassStaticProcessor(Project project, PsiClass psiClass, List<PsiMethod> methods, Settings settings) {
+        super(project);
+        myClass = psiClass;
+        myMethods = methods.toArray(new PsiMethod[methods.size()]);
+        for (PsiMethod method : methods) {
+            CustomMakeMethodStaticProcessor processor = new CustomMakeMethodStaticProcessor(project, method, settings);
+            processor.setPreviewUsages(false);
+            processor.setPrepareSuccessfulSwingThreadCallback(null);
+            myProcessors.add(processor);
+        }
+    }
+
+    @NotNull
+    @Override
+    protected UsageViewDescriptor createUsageViewDescriptor(@NotNull UsageInfo[] usages) {
+        return new UsageViewDescriptorAdapter() {
+            @NotNull
+            @Override
+            public PsiElement[] getElements() {
+                return myMethods;
+            }
+
+            @Override
+            public String getProcessedElementsHeader() {
+                return "Methods to be made static";
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    protected UsageInfo[] findUsages() {
+        myUsages.clear();
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        List<List<SmartPsiElementPointer<PsiElement>>> references = new ReferenceScanner(myProject).scan(Arrays.asList(myMethods),
+                GlobalSearchScope.projectScope(myProject), indicator != null ? indicator : new EmptyProgressIndicator(), element -> element);
+        for (int i = 0; i < myProcessors.size(); i++) {
+            CustomMakeMethodStaticProcessor processor = myProcessors.get(i);
+            processor.setExternalReferences(ContainerUtil.mapNotNull(references.get(i), SmartPsiElementPointer::getElement));
+            myUsages.put(processor, processor.collectUsages());
+        }
+        return allUsages();
+    }
+
+    @Override
+    protected boolean preprocessUsages(@NotNull Ref<UsageInfo[]> refUsages) {
+        for (CustomMakeMethodStaticProcessor processor : myProcessors) {
+            Ref<UsageInfo[]> methodUsages = Ref.create(myUsages.get(processor));
+            if (!processor.preprocess(methodUsages)) {
+                return false;
+            }
+            myUsages.put(processor, methodUsages.get());
+        }
+        refUsages.set(allUsages());
+        prepareSuccessful();
+        return true;
+    }
+
+    @Override
+    protected void performRefactoring(@NotNull UsageInfo[] usages) {
+        // usages may have been filtered by the platform after findUsages, apply only the remaining ones
+        Set<UsageInfo> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+        retained.addAll(Arrays.asList(usages));
+        // calls qualified with a variable only need the qualifier replaced, they are rewritten as text in bulk
+        BulkDocumentEditor editor = new BulkDocumentEditor(myProject);
+        for (Map.Entry<CustomMakeMethodStaticProcessor, UsageInfo[]> entry : myUsages.entrySet()) {
+            List<UsageInfo> methodUsages = new ArrayList<>();
+            for (UsageInfo usage : entry.getValue()) {
+                if (!retained.contains(usage)) {
+                    continue;
+                }
+                PsiExpression qualifier = getVariableQualifier(usage);
+                if (qualifier != null) {
+                    editor.replace(qualifier, getClassReferenceText(qualifier));
+                } else {
+                    methodUsages.add(usage);
+                }
+            }
+            entry.getKey().applyUsages(methodUsages.toArray(new UsageInfo[methodUsages.size()]));
+        }
+        editor.apply();
+    }
+
+    /**
+     * @return qualifier of an external call of the method if it's a variable, e.g. {@code service} in
+     * {@code service.method()}, otherwise null
+     */
+    @Nullable
+    private static PsiExpression getVariableQualifier(UsageInfo usage) {
+        // internal and self usages have their own classes
+        if (usage.getClass() != UsageInfo.class || !(usage.getElement() instanceof PsiReferenceExpression)) {
+            return null;
+        }
+        PsiReferenceExpression methodReference = (PsiReferenceExpression) usage.getElement();
+        if (!(methodReference.getParent() instanceof PsiMethodCallExpression)) {
+            return null;
+        }
+        PsiExpression qualifier = methodReference.getQualifierExpression();
+        if (qualifier instanceof PsiReferenceExpression && ((PsiReferenceExpression) qualifier).resolve() instanceof PsiVariable) {
+            return qualifier;
+        }
+        return null;
+    }
+
+    private String getClassReferenceText(PsiElement context) {
+        String name = myClass.getName();
+        PsiClass resolved = name != null
+                ? JavaPsiFacade.getInstance(myProject).getResolveHelper().resolveReferencedClass(name, context) : null;
+        return myClass.getManager().areElementsEquivalent(resolved, myClass) ? name : myClass.getQualifiedName();
+    }
+
+    @Nullable
+    @Override
+    protected String getRefactoringId() {
+        return "refactoring.makeStatic";
+    }
+
+    @Override
+    protected String getCommandName() {
+        return String.format("Make methods of %s static", myClass.getName());
+    }
+
+    private UsageInfo[] allUsages() {
+        List<UsageInfo> result = new ArrayList<>();
+        for (UsageInfo[] methodUsages : myUsages.values()) {
+            result.addAll(Arrays.asList(methodUsages));
+        }
+        return result.toArray(new UsageInfo[result.size()]);
+    }
+}
@@ -0,0 +1,65 @@
+package com.bavelsoft.ejectdi;
+
+import com.bavelsoft.ejectdi.EjectDIRunner.ClassSource;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.psi.PsiElement;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Analyzes the selected class, file or directory and saves a {@link ConversionPlan} to review and apply later.
+ */
+public class PlanConversionAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(PlanConversionAction.class);
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            LOG.error("project is null");
+            return;
+        }
+        PsiElement selectedPSIElement = e.getData(LangDataKeys.PSI_ELEMENT);
+        if (selectedPSIElement == null) {
+            LOG.error("selected psi element is null");
+            return;
+        }
+        ClassSource source = ClassSources.forElement(selectedPSIElement);
+        if (source == null) {
+            LOG.warn(String.format("selected element is not supported: %s", selectedPSIElement));
+            return;
+        }
+        new EjectDIRunner(project).plan(source, plan -> savePlan(project, plan));
+    }
+
+    private static void savePlan(Project project, ConversionPlan plan) {
+        if (plan.getClasses().isEmpty()) {
+            Messages.showInfoMessage(project, "No classes can be converted", "Eject DI");
+            return;
+        }
+        String description = String.format("Save the plan to convert %d classes", plan.getClasses().size());
+        VirtualFileWrapper wrapper = FileChooserFactory.getInstance()
+                .createSaveFileDialog(new FileSaverDescriptor("Save Conversion Plan", description, "json"), project)
+                .save(null, "ejectdi-plan.json");
+        if (wrapper == null) {
+            return;
+        }
+        try {
+            Files.write(wrapper.getFile().toPath(), plan.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.warn("failed to save plan", e);
+            Messages.showErrorDialog(project, "Failed to save plan: " + e.getMessage(), "Eject DI");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bavelsoft.ejectdi;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runtime weight of top-level classes read from a profile in collapsed stack format, as written by async-profiler
+ * ({@code -o collapsed}) or the flame graph tools: one stack per line, frames separated by ';', followed by
+ * the sample count. The weight of a class is the number of samples with the class anywhere on the stack,
+ * i.e. the time spent in the class and in everything it calls.
+ */
+final class ProfileWeights {
+
+    private final Map<String, Long> weights;
+    private final long totalSamples;
+
+    private ProfileWeights(Map<String, Long> weights, long totalSamples) {
+        this.weights = weights;
+        this.totalSamples = totalSamples;
+    }
+
+    @NotNull
+    static ProfileWeights parseCollapsed(@NotNull BufferedReader reader) throws IOException {
+        Map<String, Long> weights = new HashMap<>();
+        long totalSamples = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int separator = line.lastIndexOf(' ');
+            if (separator <= 0) {
+                continue;
+            }
+            long samples;
+            try {
+                samples = Long.parseLong(line.substring(separator + 1).trim());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            totalSamples += samples;
+            // a recursive class is counted once per stack
+            Set<String> classes = new HashSet<>();
+            for (String frame : line.substring(0, separator).split(";")) {
+                String className = toClassName(frame);
+                if (className != null) {
+                    classes.add(className);
+                }
+            }
+            for (String className : classes) {
+                weights.merge(className, samples, Long::sum);
+            }
+        }
+        return new ProfileWeights(weights, totalSamples);
+    }
+
+    /**
+     * @return qualified name of the top-level class of a java frame like {@code com/foo/Bar$Inner.method_[j]},
+     * or null for native and kernel frames
+     */
+    static String toClassName(String frame) {
+        String name = frame.trim();
+        int suffix = name.lastIndexOf("_[");
+        if (suffix > 0) {
+            name = name.substring(0, suffix);
+        }
+        int methodSeparator = name.indexOf("::");
+        if (methodSeparator < 0) {
+            methodSeparator = name.lastIndexOf('.');
+        }
+        if (methodSeparator <= 0 || name.indexOf('(') >= 0 && name.indexOf('(') < methodSeparator) {
+            return null;
+        }
+        String className = name.substring(0, methodSeparator).replace('/', '.');
+        int nested = className.indexOf('$');
+        if (nested > 0) {
+            className = className.substring(0, nested);
+        }
+        return className.indexOf('.') > 0 ? className : null;
+    }
+
+    long getWeight(@NotNull String qualifiedName) {
+        Long weight = weights.get(qualifiedName);
+        return weight != null ? weight : 0;
+    }
+
+    long getTotalSamples() {
+        return totalSamples;
+    }
+
+    @NotNull
+    Set<String> getClassNames() {
+        return Collections.unmodifiableSet(weights.keySet());
+    }
+}
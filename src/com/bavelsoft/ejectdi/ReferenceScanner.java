@@ -0,0 +1,194 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.util.Function;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Finds java references to many targets (classes or methods) at once. Candidate files are the union of files
+ * containing any target name according to the word index, every candidate file is visited once and each
+ * reference is routed to the target it resolves to. Files are processed concurrently, each one in its own
+ * read action, so the cost depends on the number of candidate files rather than files times targets.
+ * <p>
+ * References are streamed: each one is mapped to the element the caller needs as soon as it is found and only
+ * a smart pointer to the result is kept, so no usage infos are accumulated and the AST of a visited file
+ * can be released before the next one.
+ */
+class ReferenceScanner {
+
+    private final Project project;
+
+    ReferenceScanner(@NotNull Project project) {
+        this.project = project;
+    }
+
+    private static class Target {
+        private final int index;
+        private final PsiElement element;
+
+        private Target(int index, PsiElement element) {
+            this.index = index;
+            this.element = element;
+        }
+    }
+
+    /**
+     * @param mapper maps a reference element to the element to keep, which is dropped if null; called inside a read action
+     * @return pointers to distinct mapped elements for every target, in the order of targets
+     */
+    @NotNull
+    List<List<SmartPsiElementPointer<PsiElement>>> scan(@NotNull List<? extends PsiNamedElement> targets,
+                                                       @NotNull GlobalSearchScope scope,
+                                                       @NotNull ProgressIndicator indicator,
+                                                       @NotNull Function<PsiElement, PsiElement> mapper) {
+        List<List<SmartPsiElementPointer<PsiElement>>> result = new ArrayList<>();
+        scan(targets, scope, indicator, mapper, Math.max(targets.size(), 1), (from, group) -> result.addAll(group));
+        return result;
+    }
+
+    /**
+     * Scans the targets group by group, still visiting every candidate file once: the files of a group that
+     * weren't visited for the previous groups are visited next, and the results of the group are passed to
+     * the consumer as soon as all of its candidate files are visited. References to the targets of later groups
+     * found on the way are kept for those groups, so the consumer can work on a group while the next one is scanned.
+     *
+     * @param onGroupScanned gets the index of the first target of the group and the results of the group's targets
+     */
+    void scan(@NotNull List<? extends PsiNamedElement> targets, @NotNull GlobalSearchScope scope,
+              @NotNull ProgressIndicator indicator, @NotNull Function<PsiElement, PsiElement> mapper, int groupSize,
+              @NotNull BiConsumer<Integer, List<List<SmartPsiElementPointer<PsiElement>>>> onGroupScanned) {
+        List<List<SmartPsiElementPointer<PsiElement>>> result = new ArrayList<>();
+        for (int i = 0; i < targets.size(); i++) {
+            result.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        String[] names = new String[targets.size()];
+        Map<String, List<Target>> targetsByName = new HashMap<>();
+        Map<String, Set<VirtualFile>> filesByName = new HashMap<>();
+        BackgroundReadActions.run(indicator, () -> {
+            targetsByName.clear();
+            filesByName.clear();
+            PsiSearchHelper searchHelper = PsiSearchHelper.SERVICE.getInstance(project);
+            for (int i = 0; i < targets.size(); i++) {
+                PsiNamedElement target = targets.get(i);
+                String name = target.isValid() ? target.getName() : null;
+                names[i] = name;
+                if (name == null) {
+                    continue;
+                }
+                List<Target> sameName = targetsByName.computeIfAbsent(name, key -> new ArrayList<>());
+                sameName.add(new Target(i, target));
+                if (sameName.size() == 1) {
+                    Set<VirtualFile> files = new LinkedHashSet<>();
+                    filesByName.put(name, files);
+                    searchHelper.processAllFilesWithWord(name, scope, psiFile -> {
+                        indicator.checkCanceled();
+                        if (psiFile instanceof PsiJavaFile && psiFile.getVirtualFile() != null) {
+                            files.add(psiFile.getVirtualFile());
+                        }
+                        return true;
+                    }, true);
+                }
+            }
+        });
+
+        Set<VirtualFile> allFiles = new HashSet<>();
+        filesByName.values().forEach(allFiles::addAll);
+        Set<VirtualFile> visited = new HashSet<>();
+        AtomicInteger processed = new AtomicInteger();
+        for (int from = 0; from < targets.size(); from += groupSize) {
+            int to = Math.min(from + groupSize, targets.size());
+            List<VirtualFile> groupFiles = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Set<VirtualFile> files = names[i] != null ? filesByName.get(names[i]) : null;
+                if (files != null) {
+                    for (VirtualFile file : files) {
+                        if (visited.add(file)) {
+                            groupFiles.add(file);
+                        }
+                    }
+                }
+            }
+            visit(groupFiles, targetsByName, mapper, result, indicator, processed, allFiles.size());
+            onGroupScanned.accept(from, new ArrayList<>(result.subList(from, to)));
+        }
+    }
+
+    private void visit(List<VirtualFile> files, Map<String, List<Target>> targetsByName, Function<PsiElement, PsiElement> mapper,
+                       List<List<SmartPsiElementPointer<PsiElement>>> result, ProgressIndicator indicator,
+                       AtomicInteger processed, int total) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+        BackgroundReadActions.processConcurrently(files, indicator, file -> {
+            BackgroundReadActions.run(indicator, () -> {
+                // elements of a file are collected first, so a restarted read action doesn't report them twice
+                Set<Map.Entry<Integer, PsiElement>> found = new LinkedHashSet<>();
+                PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+                if (psiFile == null) {
+                    return;
+                }
+                psiFile.accept(new PsiRecursiveElementWalkingVisitor() {
+                    @Override
+                    public void visitElement(PsiElement element) {
+                        if (element instanceof PsiJavaCodeReferenceElement) {
+                            route((PsiJavaCodeReferenceElement) element, targetsByName, psiManager, mapper, found);
+                        }
+                        super.visitElement(element);
+                    }
+                });
+                for (Map.Entry<Integer, PsiElement> entry : found) {
+                    result.get(entry.getKey()).add(pointerManager.createSmartPsiElementPointer(entry.getValue()));
+                }
+            });
+            indicator.setFraction((double) processed.incrementAndGet() / total);
+            return true;
+        });
+    }
+
+    private static void route(PsiJavaCodeReferenceElement reference, Map<String, List<Target>> targetsByName,
+                              PsiManager psiManager, Function<PsiElement, PsiElement> mapper,
+                              Set<Map.Entry<Integer, PsiElement>> found) {
+        String name = reference.getReferenceName();
+        List<Target> candidates = name != null ? targetsByName.get(name) : null;
+        if (candidates == null) {
+            return;
+        }
+        PsiElement resolved = reference.resolve();
+        if (resolved == null) {
+            return;
+        }
+        for (Target candidate : candidates) {
+            if (psiManager.areElementsEquivalent(resolved, candidate.element)) {
+                PsiElement mapped = mapper.fun(reference);
+                if (mapped != null) {
+                    found.add(new AbstractMap.SimpleEntry<>(candidate.index, mapped));
+                }
+                return;
+            }
+        }
+    }
+}
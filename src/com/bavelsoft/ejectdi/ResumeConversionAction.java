@@ -0,0 +1,30 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+
+/**
+ * Continues the last run that was cancelled or stopped by an error, see {@link ConversionJournal}.
+ */
+public class ResumeConversionAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(ResumeConversionAction.class);
+
+    @Override
+    public void update(AnActionEvent e) {
+        Project project = e.getProject();
+        e.getPresentation().setEnabled(project != null && ConversionJournal.getInstance(project).canResume());
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            LOG.error("project is null");
+            return;
+        }
+        new EjectDIRunner(project).resume(null);
+    }
+}
@@ -0,0 +1,139 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.util.Computable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and counters of a single run. Phases that run concurrently (eligibility checks and implementation
+ * searches) accumulate the time of all threads, the others are measured as wall time.
+ */
+public class RunMetrics {
+
+    public enum Phase {
+        ENUMERATION,
+        ELIGIBILITY,
+        HAS_IMPLEMENTATIONS,
+        MAKE_STATIC,
+        USAGE_SEARCH,
+        INJECTION_SEARCH,
+        SAFE_DELETE,
+        WRITE_COMMANDS
+    }
+
+    private final Map<Phase, AtomicLong> phaseNanos = new EnumMap<>(Phase.class);
+    private final Map<SkipReason, AtomicInteger> skippedByReason = new EnumMap<>(SkipReason.class);
+    private final AtomicInteger scanned = new AtomicInteger();
+    private final AtomicInteger converted = new AtomicInteger();
+
+    public RunMetrics() {
+        for (Phase phase : Phase.values()) {
+            phaseNanos.put(phase, new AtomicLong());
+        }
+        for (SkipReason reason : SkipReason.values()) {
+            skippedByReason.put(reason, new AtomicInteger());
+        }
+    }
+
+    public void add(@NotNull Phase phase, long startNanos) {
+        addNanos(phase, System.nanoTime() - startNanos);
+    }
+
+    public void addNanos(@NotNull Phase phase, long nanos) {
+        phaseNanos.get(phase).addAndGet(nanos);
+    }
+
+    public <T> T measure(@NotNull Phase phase, @NotNull Computable<T> computable) {
+        long start = System.nanoTime();
+        try {
+            return computable.compute();
+        } finally {
+            add(phase, start);
+        }
+    }
+
+    public void measure(@NotNull Phase phase, @NotNull Runnable runnable) {
+        long start = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            add(phase, start);
+        }
+    }
+
+    void scanned() {
+        scanned.incrementAndGet();
+    }
+
+    void converted() {
+        converted.incrementAndGet();
+    }
+
+    void skipped(@NotNull SkipReason reason) {
+        skippedByReason.get(reason).incrementAndGet();
+    }
+
+    void unskipped(@NotNull SkipReason reason) {
+        skippedByReason.get(reason).decrementAndGet();
+    }
+
+    public long getMillis(@NotNull Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos.get(phase).get());
+    }
+
+    public int getScanned() {
+        return scanned.get();
+    }
+
+    public int getConverted() {
+        return converted.get();
+    }
+
+    public int getSkipped(@NotNull SkipReason reason) {
+        return skippedByReason.get(reason).get();
+    }
+
+    /**
+     * @return plain maps and numbers, suitable for JSON serialization
+     */
+    @NotNull
+    Map<String, Object> snapshot() {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            phases.put(phase.name(), getMillis(phase));
+        }
+        Map<String, Integer> skipped = new LinkedHashMap<>();
+        for (SkipReason reason : SkipReason.values()) {
+            skipped.put(reason.name(), getSkipped(reason));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("phaseMillis", phases);
+        result.put("scanned", getScanned());
+        result.put("converted", getConverted());
+        result.put("skippedByReason", skipped);
+        return result;
+    }
+
+    @NotNull
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("classes scanned: %d, converted: %d%n", getScanned(), getConverted()));
+        builder.append(String.format("%ntime per phase, ms:%n"));
+        for (Phase phase : Phase.values()) {
+            builder.append(String.format("  %-20s %8d%n", phase.name().toLowerCase(), getMillis(phase)));
+        }
+        builder.append(String.format("%nskipped by reason:%n"));
+        for (SkipReason reason : SkipReason.values()) {
+            if (getSkipped(reason) > 0) {
+                builder.append(String.format("  %-25s %8d%n", reason.name().toLowerCase(), getSkipped(reason)));
+            }
+        }
+        return builder.toString();
+    }
+}
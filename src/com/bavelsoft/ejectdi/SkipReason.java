@@ -0,0 +1,26 @@
+package com.bavelsoft.ejectdi;
+
+/**
+ * Reasons why a class can't be converted to a static utility class.
+ */
+public enum SkipReason {
+    IMPLEMENTS_INTERFACE("classes should not implement any interfaces"),
+    EXTENDS_CLASS("classes should not extend any class"),
+    HAS_IMPLEMENTATIONS("class has implementations"),
+    ABSTRACT("classes should not be abstract"),
+    SPECIFICATION_ANNOTATION("classes has specific annotation"),
+    INNER_CLASSES("classes that contain any inner classes aren't supported."),
+    MULTIPLE_CONSTRUCTORS("classes with multiple constructors aren't supported."),
+    CONSTRUCTOR_PARAMETERS("constructor has parameters"),
+    STATEFUL("class is stateful");
+
+    private final String message;
+
+    SkipReason(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,100 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.PsiDependentIndex;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes names of top-level classes that pass the local checks of {@link ClassEligibilityChecker},
+ * i.e. candidates for conversion. The search of implementations depends on other files, so it isn't indexed
+ * and has to be checked for the classes found through {@link #processCandidateFiles}.
+ */
+public class StatelessCandidateIndex extends ScalarIndexExtension<String> implements PsiDependentIndex {
+
+    public static final ID<String, Void> NAME = ID.create("com.bavelsoft.ejectdi.StatelessCandidateIndex");
+
+    @NotNull
+    @Override
+    public ID<String, Void> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Void, FileContent> getIndexer() {
+        return inputData -> {
+            PsiFile psiFile = inputData.getPsiFile();
+            if (!(psiFile instanceof PsiJavaFile)) {
+                return Collections.emptyMap();
+            }
+            Map<String, Void> result = new HashMap<>();
+            for (PsiClass psiClass : ((PsiJavaFile) psiFile).getClasses()) {
+                if (psiClass.getName() != null && ClassEligibilityChecker.isCandidateClass(psiClass)
+                        && ClassEligibilityChecker.findLocalSkipReason(psiClass) == null) {
+                    result.put(psiClass.getName(), null);
+                }
+            }
+            return result;
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    /**
+     * Feeds all files within the scope that contain indexed candidate classes to the processor.
+     * Must be called inside a read action.
+     */
+    public static void processCandidateFiles(@NotNull Project project, @NotNull GlobalSearchScope scope,
+                                             @NotNull Processor<VirtualFile> processor) {
+        FileBasedIndex index = FileBasedIndex.getInstance();
+        Set<VirtualFile> processed = new HashSet<>();
+        for (String className : index.getAllKeys(NAME, project)) {
+            for (VirtualFile file : index.getContainingFiles(NAME, className, scope)) {
+                if (processed.add(file) && !processor.process(file)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.JavaRecursiveElementWalkingVisitor;
+import com.intellij.psi.PsiAnonymousClass;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiLambdaExpression;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiMethodReferenceExpression;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiPrimitiveType;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiSuperExpression;
+import com.intellij.psi.PsiThisExpression;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.StubBasedPsiElement;
+import com.intellij.psi.impl.java.stubs.PsiFieldStub;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Classifies instance fields that don't make a class stateful: final constants and loggers initialized
+ * without touching the instance. Such fields hold the same value in every instance, so they are made static
+ * by the conversion. Fields holding convertible classes are handled by {@link InjectionGraph} instead.
+ * <p>
+ * Nothing is resolved, names are matched against the members of the class itself, so it's safe to call from
+ * an indexer. It relies on the class having no supertypes, which is checked before.
+ * Types and initializers are taken from the stubs while the files aren't loaded, so the check doesn't build ASTs.
+ */
+final class StatelessFields {
+
+    private static final Set<String> VALUE_TYPES = new HashSet<>(Arrays.asList(
+            "String", "Boolean", "Byte", "Character", "Short", "Integer", "Long", "Float", "Double"));
+    private static final Set<String> LOGGER_TYPES = new HashSet<>(Arrays.asList("Logger", "Log"));
+    // instance methods every class inherits, unqualified calls of them need the instance
+    private static final Set<String> OBJECT_METHODS = new HashSet<>(Arrays.asList(
+            "getClass", "hashCode", "equals", "toString", "clone", "notify", "notifyAll", "wait", "finalize"));
+
+    private StatelessFields() {
+    }
+
+    /**
+     * @return true if the field is static or effectively stateless
+     */
+    static boolean isStateless(@NotNull PsiField field) {
+        return field.hasModifierProperty(PsiModifier.STATIC) || isEffectivelyStateless(field);
+    }
+
+    /**
+     * @return instance fields of the class that have to be made static when the class is converted
+     */
+    @NotNull
+    static List<PsiField> findFieldsToMakeStatic(@NotNull PsiClass psiClass) {
+        List<PsiField> fields = new ArrayList<>();
+        for (PsiField field : psiClass.getFields()) {
+            if (!field.hasModifierProperty(PsiModifier.STATIC) && isEffectivelyStateless(field)) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return true for a final instance field of a value or logger type which initializer doesn't use the instance
+     */
+    static boolean isEffectivelyStateless(@NotNull PsiField field) {
+        if (!field.hasModifierProperty(PsiModifier.FINAL) || field.hasModifierProperty(PsiModifier.STATIC)) {
+            return false;
+        }
+        PsiExpression initializer = getInitializer(field);
+        PsiClass psiClass = field.getContainingClass();
+        return initializer != null && psiClass != null && isImmutableType(field) && isInstanceIndependent(initializer, psiClass);
+    }
+
+    /**
+     * @return the initializer parsed from the text kept in the stub, or the initializer from the AST if it's loaded
+     */
+    @Nullable
+    private static PsiExpression getInitializer(PsiField field) {
+        StubElement<?> stub = field instanceof StubBasedPsiElement ? ((StubBasedPsiElement<?>) field).getStub() : null;
+        if (!(stub instanceof PsiFieldStub)) {
+            return field.getInitializer();
+        }
+        String text = ((PsiFieldStub) stub).getInitializerText();
+        if (text == null) {
+            return null;
+        }
+        // markers of initializers not kept in the stub, like INITIALIZER_TOO_LONG, can't be an expression
+        if (text.startsWith(";")) {
+            return field.getInitializer();
+        }
+        try {
+            return JavaPsiFacade.getElementFactory(field.getProject()).createExpressionFromText(text, null);
+        } catch (IncorrectOperationException e) {
+            return field.getInitializer();
+        }
+    }
+
+    private static boolean isImmutableType(PsiField field) {
+        // the type is created from the text kept in the stub, the class isn't resolved
+        PsiType type = field.getType();
+        if (type instanceof PsiPrimitiveType) {
+            return true;
+        }
+        String name = type instanceof PsiClassType ? ((PsiClassType) type).getClassName() : null;
+        return name != null && (VALUE_TYPES.contains(name) || LOGGER_TYPES.contains(name));
+    }
+
+    /**
+     * @return true if the expression would compile in a static context of the class
+     */
+    static boolean isInstanceIndependent(PsiExpression expression, PsiClass psiClass) {
+        boolean[] independent = {true};
+        expression.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitThisExpression(PsiThisExpression expression) {
+                stop();
+            }
+
+            @Override
+            public void visitSuperExpression(PsiSuperExpression expression) {
+                stop();
+            }
+
+            @Override
+            public void visitLambdaExpression(PsiLambdaExpression expression) {
+                // lambda parameters can't be told from fields without resolving
+                stop();
+            }
+
+            @Override
+            public void visitAnonymousClass(PsiAnonymousClass aClass) {
+                // captures the instance
+                stop();
+            }
+
+            @Override
+            public void visitMethodReferenceExpression(PsiMethodReferenceExpression expression) {
+                stop();
+            }
+
+            @Override
+            public void visitReferenceExpression(PsiReferenceExpression expression) {
+                super.visitReferenceExpression(expression);
+                if (expression.getQualifierExpression() != null || expression.getParent() instanceof PsiMethodCallExpression) {
+                    return;
+                }
+                String name = expression.getReferenceName();
+                PsiField field = name != null ? psiClass.findFieldByName(name, false) : null;
+                if (field != null && !field.hasModifierProperty(PsiModifier.STATIC)) {
+                    stop();
+                }
+            }
+
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                super.visitMethodCallExpression(expression);
+                PsiReferenceExpression methodExpression = expression.getMethodExpression();
+                if (methodExpression.getQualifierExpression() != null) {
+                    return;
+                }
+                String name = methodExpression.getReferenceName();
+                if (name == null || OBJECT_METHODS.contains(name)) {
+                    stop();
+                    return;
+                }
+                // a name not declared in the class is imported statically
+                for (PsiMethod method : psiClass.findMethodsByName(name, false)) {
+                    if (!method.hasModifierProperty(PsiModifier.STATIC)) {
+                        stop();
+                        return;
+                    }
+                }
+            }
+
+            private void stop() {
+                independent[0] = false;
+                stopWalking();
+            }
+        });
+        return independent[0];
+    }
+}
@@ -0,0 +1,205 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiImportList;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.refactoring.makeStatic.Settings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Converts a stateless class to a static utility class and removes all instance usages (injected fields,
+ * instance declarations) of the class. Must be called on the EDT for classes accepted by {@link ClassEligibilityChecker}.
+ * The final edits of converted classes are batched until {@link #finishConvertedClasses()}.
+ */
+public class StaticClassConverter {
+
+    private static final Logger LOG = Logger.getInstance(StaticClassConverter.class);
+
+    private final Project project;
+    private final RunMetrics metrics;
+    // all commands of a run share the group, so the whole run is undone in one step
+    private final String commandGroupId;
+    private final List<SmartPsiElementPointer<PsiClass>> convertedClasses = new ArrayList<>();
+
+    public StaticClassConverter(@NotNull Project project, @NotNull RunMetrics metrics) {
+        this.project = project;
+        this.metrics = metrics;
+        this.commandGroupId = "EjectDI." + System.identityHashCode(this);
+    }
+
+    /**
+     * Makes the methods and effectively stateless fields static and removes instance usages of the class.
+     *
+     * @param declarations    instance declarations of the class, see {@link #findDeletionTarget(PsiElement)}
+     * @param injectionPoints declarations injecting the class found by {@link InjectionPoints}
+     */
+    public void convert(@NotNull PsiClass psiClass, @NotNull List<SmartPsiElementPointer<PsiElement>> declarations,
+                        @NotNull List<SmartPsiElementPointer<PsiElement>> injectionPoints) {
+        LOG.info(String.format("%s is stateless. converting to static...", psiClass));
+        List<PsiField> fields = StatelessFields.findFieldsToMakeStatic(psiClass);
+        if (!fields.isEmpty()) {
+            // constants and loggers have to be static before the methods using them are
+            metrics.measure(RunMetrics.Phase.MAKE_STATIC, () ->
+                    WriteCommandAction.runWriteCommandAction(project, "Make fields static", commandGroupId, () -> {
+                        for (PsiField field : fields) {
+                            field.getModifierList().setModifierProperty(PsiModifier.STATIC, true);
+                        }
+                    }));
+        }
+        List<PsiMethod> methods = findMethodsToMakeStatic(psiClass);
+        final Settings settings = new Settings(
+                true,
+                null, null,
+                false
+        );
+        if (!methods.isEmpty()) {
+            MakeClassStaticProcessor makeClassStaticProcessor = new MakeClassStaticProcessor(project, psiClass, methods, settings);
+            makeClassStaticProcessor.setPreviewUsages(false);
+            makeClassStaticProcessor.setPrepareSuccessfulSwingThreadCallback(null);
+            metrics.measure(RunMetrics.Phase.MAKE_STATIC, () -> runInCommand(makeClassStaticProcessor::run));
+        }
+        SmartPsiElementPointer<PsiClass> pointer = SmartPointerManager.getInstance(project).createSmartPsiElementPointer(psiClass);
+        List<PsiElement> declarationElements = declarations.stream()
+                .map(SmartPsiElementPointer::getElement)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        List<PsiElement> injectionElements = injectionPoints.stream()
+                .map(SmartPsiElementPointer::getElement)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        metrics.measure(RunMetrics.Phase.SAFE_DELETE, () -> runInCommand(() -> delete(psiClass, declarationElements, injectionElements)));
+        convertedClasses.add(pointer);
+    }
+
+    /**
+     * @return instance methods of the class, except the ones inherited from Object
+     */
+    @NotNull
+    static List<PsiMethod> findMethodsToMakeStatic(@NotNull PsiClass psiClass) {
+        return Arrays.stream(psiClass.getAllMethods())
+                .filter(psiMethod -> !psiMethod.isConstructor())
+                .filter(psiMethod -> !psiMethod.getModifierList().hasModifierProperty(PsiModifier.STATIC) &&
+                        // skip inherited methods from Object class.
+                        !Object.class.getCanonicalName().equals(psiMethod.getContainingClass().getQualifiedName())
+                )
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Adds a class converted by an earlier run that was interrupted before {@link #finishConvertedClasses()}.
+     * Finishing a class is idempotent, so it doesn't matter whether the class was finished already.
+     */
+    void addConvertedClass(@NotNull PsiClass psiClass) {
+        convertedClasses.add(SmartPointerManager.getInstance(project).createSmartPsiElementPointer(psiClass));
+    }
+
+    /**
+     * Removes @Singleton, makes the class final and its constructor private for all classes converted so far.
+     * The edits of all classes are done in a single write command, so the documents are committed once.
+     */
+    public void finishConvertedClasses() {
+        if (convertedClasses.isEmpty()) {
+            return;
+        }
+        List<PsiClass> classes = convertedClasses.stream()
+                .map(SmartPsiElementPointer::getElement)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        convertedClasses.clear();
+        metrics.measure(RunMetrics.Phase.WRITE_COMMANDS, () ->
+                WriteCommandAction.runWriteCommandAction(project, "Make classes final", commandGroupId, () -> {
+                    for (PsiClass psiClass : classes) {
+                        makeUtilityClass(psiClass);
+                    }
+                }));
+    }
+
+    private void makeUtilityClass(PsiClass psiClass) {
+        // todo use parameter for this ?
+        for (PsiAnnotation annotation : ClassEligibilityChecker.findAnnotations(psiClass, "Singleton")) {
+            annotation.delete();
+        }
+
+        psiClass.getModifierList().setModifierProperty(PsiModifier.FINAL, true);
+
+        // make default constructor private
+        if (psiClass.getConstructors().length == 1) {
+            PsiMethod constructor = psiClass.getConstructors()[0];
+            constructor.getModifierList().setModifierProperty(PsiModifier.PRIVATE, true);
+        } else {
+            PsiMethod constructor = JavaPsiFacade.getElementFactory(project).createConstructor(psiClass.getNameIdentifier().getText());
+            constructor.getModifierList().setModifierProperty(PsiModifier.PRIVATE, true);
+            psiClass.add(constructor);
+        }
+    }
+
+    /**
+     * Runs a refactoring processor inside a command of the run group, the processor's own command is merged into it.
+     */
+    private void runInCommand(Runnable runnable) {
+        CommandProcessor.getInstance().executeCommand(project, runnable, null, commandGroupId);
+    }
+
+    /**
+     * Removes the injection points and the other instance declarations (e.g. local variables) in one run
+     * of safe delete, so usages inside the removed elements (e.g. assignments of removed parameters) don't block it.
+     */
+    public void delete(PsiClass psiClass, List<PsiElement> declarations, List<PsiElement> injectionPoints) {
+        ElementRangeIndex injected = new ElementRangeIndex(injectionPoints.toArray(new PsiElement[injectionPoints.size()]));
+        Set<PsiElement> forDelete = new LinkedHashSet<>(injectionPoints);
+        declarations.stream()
+                .filter(declaration -> !injected.contains(declaration))
+                .forEach(forDelete::add);
+        if (forDelete.isEmpty()) {
+            return;
+        }
+
+        CustomSafeDeleteProcessor safeDeleteProcessor = CustomSafeDeleteProcessor.createInstance(project, () -> {
+                }, forDelete.toArray(new PsiElement[forDelete.size()]), false,
+                false, true);
+        safeDeleteProcessor.run();
+    }
+
+    /**
+     * @return the declaration to remove for a reference to a converted class: a field, a constructor parameter
+     * or an instance declaration; null for the references which are kept, e.g. static calls and imports
+     */
+    @Nullable
+    static PsiElement findDeletionTarget(@NotNull PsiElement reference) {
+        PsiElement parent;
+        // we need to remove: class fields, constructor injections, instance declarations;
+        if (reference.getContext() != null) {
+            parent = reference.getContext().getParent();
+        } else {
+            LOG.warn(String.format("context is empty for usage: %s", reference));
+            parent = reference.getParent().getParent();
+        }
+        // consider static method call on 'psiClass' should be ignored
+        // don't remove imports
+        if (parent instanceof PsiMethodCallExpression || parent instanceof PsiImportList) {
+            return null;
+        }
+        return parent;
+    }
+}
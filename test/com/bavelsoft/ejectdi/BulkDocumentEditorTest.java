@@ -0,0 +1,38 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.util.TextRange;
+import junit.framework.TestCase;
+
+public class BulkDocumentEditorTest extends TestCase {
+
+    public void testRangeAloneOnLineIsExpandedToLine() {
+        String text = "class A {\n    int x;\n}\n";
+        assertEquals(new TextRange(10, 21), expand(text, "int x;"));
+    }
+
+    public void testLastLineWithoutLineBreak() {
+        String text = "class A {\n\tint x;";
+        assertEquals(new TextRange(10, 17), expand(text, "int x;"));
+    }
+
+    public void testRangeSharingLineIsKept() {
+        String text = "class A {\n    int x; int y;\n}\n";
+        TextRange range = range(text, "int x;");
+        assertEquals(range, BulkDocumentEditor.expandToLines(range, text));
+        range = range(text, "int y;");
+        assertEquals(range, BulkDocumentEditor.expandToLines(range, text));
+    }
+
+    public void testTrailingBlanksAreRemoved() {
+        String text = "{\n  int x;  \n}";
+        assertEquals(new TextRange(2, 13), expand(text, "int x;"));
+    }
+
+    private static TextRange expand(String text, String element) {
+        return BulkDocumentEditor.expandToLines(range(text, element), text);
+    }
+
+    private static TextRange range(String text, String element) {
+        return TextRange.from(text.indexOf(element), element.length());
+    }
+}
@@ -0,0 +1,73 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiIdentifier;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+public class ConversionPlanTest extends LightCodeInsightFixtureTestCase {
+
+    public void testLocationResolvesUnchangedElement() {
+        PsiField field = createService().getFields()[0];
+        ConversionPlan.Location location = ConversionPlan.Location.create(field);
+        assertNotNull(location);
+        assertEquals(field, location.resolve(getProject(), PsiField.class));
+        assertNull(location.resolve(getProject(), PsiMethod.class));
+    }
+
+    public void testLocationDoesNotResolveChangedElement() {
+        PsiField field = createService().getFields()[0];
+        ConversionPlan.Location location = ConversionPlan.Location.create(field);
+        assertNotNull(location);
+        // same length, so only the text differs
+        PsiIdentifier name = JavaPsiFacade.getElementFactory(getProject()).createIdentifier("bar");
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> field.getNameIdentifier().replace(name));
+        assertNull(location.resolve(getProject(), PsiField.class));
+    }
+
+    public void testLocationDoesNotResolveMovedElement() {
+        PsiClass service = createService();
+        ConversionPlan.Location location = ConversionPlan.Location.create(service.getFields()[0]);
+        assertNotNull(location);
+        PsiField added = JavaPsiFacade.getElementFactory(getProject()).createFieldFromText("private int first;", service);
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> service.addBefore(added, service.getFields()[0]));
+        assertNull(location.resolve(getProject(), PsiField.class));
+    }
+
+    public void testMissingListsOfSavedPlanAreEmpty() {
+        ConversionPlan plan = ConversionPlan.fromJson("{\"classes\": [{\"qualifiedName\": \"app.Service\", " +
+                "\"location\": {\"fileUrl\": \"temp:///src/Service.java\", \"offset\": 0, \"length\": 5, \"hash\": \"0\"}}]}");
+        ConversionPlan.ClassItem item = plan.getClasses().get(0);
+        assertEmpty(item.getMethods());
+        assertEmpty(item.getStaticFields());
+        assertEmpty(item.getDeclarations());
+        assertEmpty(item.getInjectionPoints());
+    }
+
+    public void testIncompletePlanIsRejected() {
+        assertRejected("{\"classes\": null}", "plan has no classes");
+        assertRejected("{\"classes\": [{\"location\": null}]}", "plan has a class without a name");
+        assertRejected("{\"classes\": [{\"qualifiedName\": \"app.Service\"}]}", "app.Service: class location is incomplete");
+        assertRejected("{\"classes\": [{\"qualifiedName\": \"app.Service\", \"declarations\": null}]}",
+                "app.Service: class has a list set to null in the plan");
+    }
+
+    private static void assertRejected(String json, String message) {
+        try {
+            ConversionPlan.fromJson(json);
+            fail("plan is accepted: " + json);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private PsiClass createService() {
+        PsiJavaFile file = (PsiJavaFile) myFixture.configureByText("Service.java",
+                "class Service {\n    private final Dependency dep;\n}\n");
+        return file.getClasses()[0];
+    }
+}
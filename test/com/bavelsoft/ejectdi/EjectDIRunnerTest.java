@@ -0,0 +1,132 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+/**
+ * Converts small projects and compares the sources with the expected ones. Whitespace is ignored,
+ * the layout of the edited lines is up to the formatter.
+ */
+public class EjectDIRunnerTest extends LightCodeInsightFixtureTestCase {
+
+    private static final String FORMATTER = "package app;\n\n" +
+            "import javax.inject.Singleton;\n\n" +
+            "@Singleton\n" +
+            "public class Formatter {\n" +
+            "    private final String prefix = \"v\";\n\n" +
+            "    public Formatter() {\n" +
+            "    }\n\n" +
+            "    public String format(int value) {\n" +
+            "        return prefix + hex(value);\n" +
+            "    }\n\n" +
+            "    public String hex(int value) {\n" +
+            "        return Integer.toHexString(value);\n" +
+            "    }\n" +
+            "}\n";
+
+    private static final String CONVERTED_FORMATTER = "package app;\n\n" +
+            "import javax.inject.Singleton;\n\n" +
+            "public final class Formatter {\n" +
+            "    private static final String prefix = \"v\";\n\n" +
+            "    private Formatter() {\n" +
+            "    }\n\n" +
+            "    public static String format(int value) {\n" +
+            "        return prefix + hex(value);\n" +
+            "    }\n\n" +
+            "    public static String hex(int value) {\n" +
+            "        return Integer.toHexString(value);\n" +
+            "    }\n" +
+            "}\n";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addFileToProject("javax/inject/Singleton.java", "package javax.inject;\n\npublic @interface Singleton {\n}\n");
+        myFixture.addFileToProject("javax/inject/Inject.java", "package javax.inject;\n\npublic @interface Inject {\n}\n");
+    }
+
+    public void testInjectedFieldIsRemovedAndCallsAreStatic() {
+        PsiFile formatter = myFixture.addFileToProject("app/Formatter.java", FORMATTER);
+        PsiFile report = myFixture.addFileToProject("app/Report.java", "package app;\n\n" +
+                "import javax.inject.Inject;\n\n" +
+                "public class Report {\n" +
+                "    @Inject\n" +
+                "    Formatter formatter;\n" +
+                "    private int count;\n\n" +
+                "    public String render() {\n" +
+                "        count++;\n" +
+                "        return formatter.format(count) + formatter.hex(count);\n" +
+                "    }\n" +
+                "}\n");
+
+        ConversionReport result = convertProject();
+
+        assertEquals(1, result.getConverted().size());
+        assertSameSource(CONVERTED_FORMATTER, formatter);
+        assertSameSource("package app;\n\n" +
+                "import javax.inject.Inject;\n\n" +
+                "public class Report {\n" +
+                "    private int count;\n\n" +
+                "    public String render() {\n" +
+                "        count++;\n" +
+                "        return Formatter.format(count) + Formatter.hex(count);\n" +
+                "    }\n" +
+                "}\n", report);
+    }
+
+    public void testAllInjectingClassesAreUpdated() {
+        PsiFile formatter = myFixture.addFileToProject("app/Formatter.java", FORMATTER);
+        PsiFile first = myFixture.addFileToProject("app/First.java", injecting("First"));
+        PsiFile second = myFixture.addFileToProject("app/Second.java", injecting("Second"));
+
+        ConversionReport result = convertProject();
+
+        assertEquals(1, result.getConverted().size());
+        assertSameSource(CONVERTED_FORMATTER, formatter);
+        assertSameSource(converted("First"), first);
+        assertSameSource(converted("Second"), second);
+    }
+
+    private static String injecting(String name) {
+        return "package app;\n\n" +
+                "import javax.inject.Inject;\n\n" +
+                "public class " + name + " {\n" +
+                "    @Inject\n" +
+                "    private Formatter formatter;\n" +
+                "    private int calls;\n\n" +
+                "    public String call() {\n" +
+                "        return formatter.format(calls++);\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    private static String converted(String name) {
+        return "package app;\n\n" +
+                "import javax.inject.Inject;\n\n" +
+                "public class " + name + " {\n" +
+                "    private int calls;\n\n" +
+                "    public String call() {\n" +
+                "        return Formatter.format(calls++);\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    private ConversionReport convertProject() {
+        ConversionReport[] result = new ConversionReport[1];
+        // background tasks run synchronously in tests
+        new EjectDIRunner(getProject()).run(ClassSources.forScope(GlobalSearchScope.projectScope(getProject())),
+                report -> result[0] = report);
+        assertNotNull("run is not finished", result[0]);
+        assertEquals(result[0].format(), 0, result[0].getFailedCount());
+        return result[0];
+    }
+
+    private static void assertSameSource(String expected, PsiFile file) {
+        assertEquals(normalize(expected), normalize(file.getText()));
+    }
+
+    private static String normalize(String text) {
+        return text.replaceAll("\\s+", " ").trim();
+    }
+}
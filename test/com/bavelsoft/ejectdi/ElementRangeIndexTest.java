@@ -0,0 +1,41 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.openapi.util.TextRange;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ElementRangeIndexTest extends TestCase {
+
+    public void testNestedAndOverlappingRangesAreMerged() {
+        ElementRangeIndex.Intervals intervals = new ElementRangeIndex.Intervals(Arrays.asList(
+                new TextRange(20, 30), new TextRange(0, 10), new TextRange(2, 5), new TextRange(25, 40)));
+        assertTrue(intervals.contains(new TextRange(0, 10)));
+        assertTrue(intervals.contains(new TextRange(3, 4)));
+        assertTrue(intervals.contains(new TextRange(22, 38)));
+        assertFalse(intervals.contains(new TextRange(8, 12)));
+        assertFalse(intervals.contains(new TextRange(12, 15)));
+        assertFalse(intervals.contains(new TextRange(35, 45)));
+    }
+
+    public void testAdjacentRangesAreNotMerged() {
+        ElementRangeIndex.Intervals intervals = new ElementRangeIndex.Intervals(Arrays.asList(
+                new TextRange(0, 5), new TextRange(5, 10)));
+        assertTrue(intervals.contains(new TextRange(1, 5)));
+        assertTrue(intervals.contains(new TextRange(5, 9)));
+        assertFalse(intervals.contains(new TextRange(3, 7)));
+    }
+
+    public void testRangeWithSameStartAsOuterRange() {
+        ElementRangeIndex.Intervals intervals = new ElementRangeIndex.Intervals(Arrays.asList(
+                new TextRange(5, 5), new TextRange(5, 10)));
+        assertTrue(intervals.contains(new TextRange(5, 10)));
+        assertTrue(intervals.contains(new TextRange(5, 5)));
+    }
+
+    public void testEmpty() {
+        ElementRangeIndex.Intervals intervals = new ElementRangeIndex.Intervals(Collections.emptyList());
+        assertFalse(intervals.contains(new TextRange(0, 0)));
+    }
+}
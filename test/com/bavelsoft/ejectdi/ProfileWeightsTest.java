@@ -0,0 +1,44 @@
+package com.bavelsoft.ejectdi;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+public class ProfileWeightsTest extends TestCase {
+
+    public void testClassIsWeighedOncePerStack() throws IOException {
+        ProfileWeights weights = parse(
+                "java/lang/Thread.run_[j];com/foo/Bar.run_[j];com/foo/Baz$Inner.call_[j];com/foo/Bar.run_[j] 10\n" +
+                "com.foo.Qux::work;com.foo.Bar.run 3\n" +
+                "[unknown];libc.so;do_syscall_64_[k] 5\n");
+        assertEquals(18, weights.getTotalSamples());
+        assertEquals(13, weights.getWeight("com.foo.Bar"));
+        assertEquals(10, weights.getWeight("com.foo.Baz"));
+        assertEquals(3, weights.getWeight("com.foo.Qux"));
+        assertEquals(0, weights.getWeight("com.foo.Missing"));
+    }
+
+    public void testMalformedLinesAreSkipped() throws IOException {
+        ProfileWeights weights = parse("com/foo/Bar.run_[j]\ncom/foo/Bar.run_[j] many\n 7\ncom/foo/Baz.run_[j] 2\n");
+        assertEquals(2, weights.getTotalSamples());
+        assertEquals(0, weights.getWeight("com.foo.Bar"));
+        assertEquals(2, weights.getWeight("com.foo.Baz"));
+    }
+
+    public void testToClassName() {
+        assertEquals("com.foo.Bar", ProfileWeights.toClassName("com/foo/Bar$Inner.method_[j]"));
+        assertEquals("com.foo.Bar", ProfileWeights.toClassName("com/foo/Bar.lambda$run$0_[i]"));
+        assertEquals("java.lang.Thread", ProfileWeights.toClassName("java.lang.Thread.run"));
+        assertEquals("com.foo.Bar", ProfileWeights.toClassName(" com.foo.Bar::run "));
+        assertNull(ProfileWeights.toClassName("Interpreter"));
+        assertNull(ProfileWeights.toClassName("do_syscall_64_[k]"));
+        assertNull(ProfileWeights.toClassName("JavaThread::run()"));
+        assertNull(ProfileWeights.toClassName("Bar.run"));
+    }
+
+    private static ProfileWeights parse(String text) throws IOException {
+        return ProfileWeights.parseCollapsed(new BufferedReader(new StringReader(text)));
+    }
+}
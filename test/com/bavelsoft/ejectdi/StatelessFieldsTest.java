@@ -0,0 +1,50 @@
+package com.bavelsoft.ejectdi;
+
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+public class StatelessFieldsTest extends LightCodeInsightFixtureTestCase {
+
+    private static final String SERVICE = "class Service {\n" +
+            "    private static final int LIMIT = 10;\n" +
+            "    private final int size = 3;\n" +
+            "    static int twice(int x) { return x * 2; }\n" +
+            "    int count() { return size; }\n" +
+            "}\n";
+
+    private PsiClass service;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        service = ((PsiJavaFile) myFixture.configureByText("Service.java", SERVICE)).getClasses()[0];
+    }
+
+    public void testStaticMembersAreInstanceIndependent() {
+        assertTrue(isInstanceIndependent("LIMIT * 2"));
+        assertTrue(isInstanceIndependent("twice(LIMIT)"));
+        assertTrue(isInstanceIndependent("Math.max(LIMIT, 1)"));
+        assertTrue(isInstanceIndependent("\"size\".length()"));
+    }
+
+    public void testInstanceMembersAreNotInstanceIndependent() {
+        assertFalse(isInstanceIndependent("size + 1"));
+        assertFalse(isInstanceIndependent("this.size"));
+        assertFalse(isInstanceIndependent("count()"));
+        assertFalse(isInstanceIndependent("hashCode()"));
+        assertFalse(isInstanceIndependent("super.toString()"));
+    }
+
+    public void testCapturingExpressionsAreNotInstanceIndependent() {
+        assertFalse(isInstanceIndependent("(java.util.function.IntSupplier) () -> LIMIT"));
+        assertFalse(isInstanceIndependent("(Runnable) Service::new"));
+        assertFalse(isInstanceIndependent("new Object() { }"));
+    }
+
+    private boolean isInstanceIndependent(String expression) {
+        return StatelessFields.isInstanceIndependent(
+                JavaPsiFacade.getElementFactory(getProject()).createExpressionFromText(expression, service), service);
+    }
+}